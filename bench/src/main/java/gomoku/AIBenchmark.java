@@ -0,0 +1,73 @@
+package gomoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 的候选点生成
+ * 都是微秒级的调用，不能每次调用前都清空（JMH 的 Level.Invocation 在 1 ms 以下时计时开销占大头），
+ * 所以只在每轮测量开始前清空一次：generatePossiblePoints 的算杀除了每轮的第一次以外都命中缓存；
+ * generateMoves 不用置换表和算杀缓存，不受影响。固定深度的搜索见 SearchBenchmark。
+ * <p>
+ * Benchmarks for move generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class AIBenchmark {
+	@Param({"opening", "midgame", "tactical"})
+	String position;
+
+	private AI ai;
+	private short player;
+
+	@Setup
+	public void setUp() {
+		Board board = BenchmarkPositions.load(position);
+		player = (short) board.getPlayerTurn();
+		ai = new AI(board, player, 1, 4);
+		ai.verbose = false;
+		ai.setRandomTieBreak(false);
+	}
+
+	/**
+	 * 每轮测量前清空，每轮的条件相同
+	 */
+	@Setup(Level.Iteration)
+	public void clear() {
+		ai.clear();
+	}
+
+	/**
+	 * 包括算杀（tactical 局面直接由算杀返回），算杀的结果大多来自缓存
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<int[]> generatePossiblePoints() {
+		return ai.generatePossiblePoints(player);
+	}
+
+	/**
+	 * 只有候选点生成和排序，不包括算杀
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public int generateMoves() {
+		return ai.generateMoves(player, 0);
+	}
+}
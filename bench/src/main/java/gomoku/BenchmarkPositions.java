@@ -0,0 +1,62 @@
+package gomoku;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基准测试所用的局面
+ * 每个局面是一个着法序列（格式见 BatchEvaluator.parseMoves），黑棋先下，轮到下一步的一方搜索。
+ * <p>
+ * Curated opening, midgame and tactical positions shared by all benchmarks.
+ */
+final class BenchmarkPositions {
+	/**
+	 * 开局：6 个棋子，候选点较少
+	 */
+	static final String OPENING = "7,7 6,6 7,5 8,6 7,6 7,8";
+	/**
+	 * 中局：18 个棋子，候选点达到上限（20 个）
+	 */
+	static final String MIDGAME = "7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7 5,8 8,7 9,7 7,4 7,3 6,3 9,6 9,4 10,3";
+	/**
+	 * 战术：黑棋有连续冲四取胜，走算杀的路径
+	 */
+	static final String TACTICAL = "7,7 7,6 7,8 7,10 7,9 10,4 8,6 5,11 9,5 3,3 6,10 12,12";
+	/**
+	 * 名称 -> 局面，名称用作 JMH 的 @Param
+	 */
+	static final Map<String, String> ALL = Map.of("opening", OPENING, "midgame", MIDGAME, "tactical", TACTICAL);
+
+	private BenchmarkPositions() {
+	}
+
+	/**
+	 * 在新棋盘上重放一个局面
+	 *
+	 * @param name 局面名称
+	 * @return 棋盘，playerTurn 是下一步的一方
+	 */
+	static Board load(String name) {
+		String moves = ALL.get(name);
+		if (moves == null) {
+			throw new ValueOutOfRangeException();
+		}
+		Board board = new Board();
+		List<int[]> record = BatchEvaluator.parseMoves(moves);
+		for (int[] move : record) {
+			board.setChess(move[0], move[1], true);
+		}
+		return board;
+	}
+
+	/**
+	 * 局面的最后一步棋
+	 *
+	 * @param name 局面名称
+	 * @return {row, column}
+	 */
+	static int[] lastMove(String name) {
+		List<int[]> record = BatchEvaluator.parseMoves(ALL.get(name));
+		return record.get(record.size() - 1);
+	}
+}
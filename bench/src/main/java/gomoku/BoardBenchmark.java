@@ -0,0 +1,95 @@
+package gomoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Board 的热点方法
+ * 每个方法都只读棋盘或者执行后恢复原状，所以同一个棋盘可以反复测量。
+ * <p>
+ * Microbenchmarks for the Board hot paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmark {
+	@Param({"opening", "midgame", "tactical"})
+	String position;
+
+	private Board board;
+	private short player;
+	/**
+	 * 一个候选空位，以及最后一步棋的位置
+	 */
+	private int emptyRow, emptyColumn, lastRow, lastColumn;
+	/**
+	 * scorePoint 的四个方向，预先创建，避免每次调用都分配可变参数数组
+	 */
+	private final int[] directions = {1, 2, 3, 4};
+
+	@Setup
+	public void setUp() {
+		board = BenchmarkPositions.load(position);
+		player = (short) board.getPlayerTurn();
+		int cell = board.candidates().get(0);
+		emptyRow = cell / 15;
+		emptyColumn = cell % 15;
+		int[] last = BenchmarkPositions.lastMove(position);
+		lastRow = last[0];
+		lastColumn = last[1];
+	}
+
+	@Benchmark
+	public int scorePoint() {
+		return board.scorePoint(emptyRow, emptyColumn, player, directions);
+	}
+
+	@Benchmark
+	public int patternScore() {
+		return board.patternScore(emptyRow, emptyColumn, player, 1);
+	}
+
+	@Benchmark
+	public Board updateScore() {
+		// 分数已经是最新的，重新计算一遍不改变结果
+		board.updateScore(lastRow, lastColumn);
+		return board;
+	}
+
+	@Benchmark
+	public int scoreBoard() {
+		return board.scoreBoard(player, 1);
+	}
+
+	@Benchmark
+	public int isEnd() {
+		return board.isEnd();
+	}
+
+	@Benchmark
+	public int isEndAt() {
+		return board.isEnd(lastRow, lastColumn);
+	}
+
+	@Benchmark
+	public long makeUnmakeMove() {
+		board.makeMove(emptyRow, emptyColumn, player);
+		long key = board.getZobristKey();
+		board.unmakeMove();
+		return key;
+	}
+}
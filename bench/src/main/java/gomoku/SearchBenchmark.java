@@ -0,0 +1,63 @@
+package gomoku;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 的固定深度搜索
+ * 关闭根节点的随机选择，每次调用前清空置换表、历史表和算杀缓存，所以每次测量的都是同样的搜索。
+ * 每次搜索要几毫秒以上，每次调用前清空（Level.Invocation）的计时开销可以忽略。
+ * <p>
+ * Benchmark for a fixed-depth minMaxSearch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchBenchmark {
+	@Param({"opening", "midgame", "tactical"})
+	String position;
+
+	@Param({"4"})
+	int depth;
+
+	private AI ai;
+
+	@Setup
+	public void setUp() {
+		Board board = BenchmarkPositions.load(position);
+		ai = new AI(board, (short) board.getPlayerTurn(), 1, 4);
+		ai.verbose = false;
+		ai.setRandomTieBreak(false);
+	}
+
+	/**
+	 * 每次调用前清空，搜索不受上一次调用的影响
+	 */
+	@Setup(Level.Invocation)
+	public void clear() {
+		ai.clear();
+	}
+
+	@Benchmark
+	public int minMaxSearch() {
+		List<int[]> outcome = new ArrayList<>();
+		return ai.minMaxSearch(depth, outcome) + outcome.get(0)[0];
+	}
+}
@@ -1,8 +1,15 @@
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -26,7 +33,68 @@ public class AI {
 	 * The constant CONTINUE.
 	 */
 	private static final int CONTINUE = 10004;
-	private static double weight;
+	/**
+	 * 默认置换表大小（MB）
+	 */
+	static final int DEFAULT_TABLE_SIZE = 16;
+	/**
+	 * 与棋盘的 Zobrist 键异或，用于区分 AI 下棋和对方下棋时的同一局面
+	 */
+	private static final long MAX_NODE_KEY = 0x9E3779B97F4A7C15L;
+	/**
+	 * 并行模式：根节点分割，每个根节点候选点一个任务
+	 */
+	static final int ROOT_SPLIT = 0;
+	/**
+	 * 并行模式：Lazy SMP，所有线程各自搜索整棵树，通过共享的置换表互相帮助
+	 */
+	static final int LAZY_SMP = 1;
+	/**
+	 * 最大搜索层数，决定每层候选点数组的数量
+	 */
+	static final int MAX_PLY = 64;
+	/**
+	 * 必胜分数：在第 ply 层分出胜负时，胜方得 MATE - ply，负方得 ply - MATE
+	 */
+	static final int MATE = 1000000000;
+	/**
+	 * 分数的绝对值不小于此值时表示已分胜负
+	 */
+	static final int MATE_BOUND = MATE - MAX_PLY;
+	/**
+	 * 比任何分数都大的值，作为搜索窗口的初始边界
+	 */
+	private static final int INFINITY = MATE + 1;
+	/**
+	 * 历史表中的分数超过此值时全部减半，防止溢出
+	 */
+	private static final int HISTORY_LIMIT = 1 << 24;
+	/**
+	 * 算杀的最多进攻步数
+	 */
+	private static final int VCF_DEPTH = 12, VCT_DEPTH = 6;
+	/**
+	 * 算杀的节点数上限（VCF 和 VCT 各自）
+	 */
+	private static final int THREAT_NODE_LIMIT = 20000;
+	/**
+	 * 候选点生成时所用的棋形分数
+	 */
+	private static final int FIVE = Board.STANDARDS.get("5+"), FOUR = Board.STANDARDS.get("4+"),
+					BLOCKED_FOUR = Board.STANDARDS.get("4-"), THREE = Board.STANDARDS.get("3+"),
+					TWO = Board.STANDARDS.get("2+");
+	/**
+	 * 候选点的威胁类型，同时也是排序后的顺序
+	 * 前缀 E_ 表示对方的棋形
+	 */
+	private static final int FIVE_CLASS = 0, FOUR_CLASS = 1, E_FOUR_CLASS = 2,
+					DOUBLE_THREE_CLASS = 3, E_DOUBLE_THREE_CLASS = 4, BLOCKED_FOUR_CLASS = 5, E_BLOCKED_FOUR_CLASS = 6,
+					THREE_CLASS = 7, E_THREE_CLASS = 8, TWO_CLASS = 9, E_TWO_CLASS = 10, NEIGHBOR_CLASS = 11,
+					CLASS_COUNT = 12;
+	/**
+	 * 计算敌我得分时的权重（见构造器）
+	 */
+	private final double weight;
 	/**
 	 * 所用的棋盘类
 	 */
@@ -35,6 +103,86 @@ public class AI {
 	 * AI 的玩家角色 (BLACK or WHITE)
 	 */
 	short aiNum;
+	/**
+	 * 置换表，缓存 negamax 的搜索结果
+	 */
+	final TranspositionTable table;
+	/**
+	 * 每层的候选点（row * 15 + column），由 generateMoves 写入
+	 * 用法：moves[ply][i]
+	 */
+	private final int[][] moves = new int[MAX_PLY][225];
+	/**
+	 * 每层候选点对应的排序分数（双方在该点的得分之和）
+	 * 用法：moveScores[ply][i]
+	 */
+	private final int[][] moveScores = new int[MAX_PLY][225];
+	/**
+	 * generateMoves 的临时数组
+	 */
+	private final int[] candidateType = new int[225], candidateScore = new int[225], classCount = new int[CLASS_COUNT];
+	/**
+	 * generateMoves 排序所用的临时数组，与 moves[ply] 一一对应
+	 */
+	private final int[] orderKeys = new int[225];
+	/**
+	 * 杀手着法：每层最近两个引起剪枝的着法（row * 15 + column），没有时为 NO_MOVE
+	 * 用法：killers[ply][0 or 1]
+	 */
+	private final int[][] killers = new int[MAX_PLY][2];
+	/**
+	 * 历史表：每个玩家在每个位置上引起剪枝的累计分数
+	 * 用法：history[player - BLACK][row * 15 + column]
+	 */
+	private final int[][] history = new int[2][225];
+	/**
+	 * 算杀
+	 */
+	private final ThreatSearch threatSearch = new ThreatSearch();
+	/**
+	 * 开局库，没有时为 null
+	 */
+	private OpeningBook book;
+	/**
+	 * 根节点有多个同分的候选点时是否随机选择，否则选排在最前面的
+	 */
+	private boolean randomTieBreak = true;
+	/**
+	 * 用于根节点同分时的随机选择
+	 */
+	private final Random random = new Random();
+	/**
+	 * 根节点并行搜索的线程数，为 1 时不并行
+	 */
+	private int threads = 1;
+	/**
+	 * 并行模式（ROOT_SPLIT 或 LAZY_SMP）
+	 */
+	private int parallelMode = ROOT_SPLIT;
+	/**
+	 * 根节点并行搜索所用的线程池，threads 为 1 时为 null
+	 */
+	private ForkJoinPool pool;
+	/**
+	 * Lazy SMP 的辅助线程所用的停止标记，主线程搜索完成后设为 true；主线程自己为 null
+	 */
+	private final AtomicBoolean stop;
+	/**
+	 * 上一次搜索的节点数（包括所有辅助线程，以及根节点算杀的节点）
+	 */
+	private long nodes = 0;
+	/**
+	 * 是否输出搜索进度
+	 */
+	boolean verbose = true;
+	/**
+	 * 限时搜索的截止时间（System.nanoTime），不限时为 Long.MAX_VALUE
+	 */
+	private long deadline = Long.MAX_VALUE;
+	/**
+	 * 限时搜索的节点数上限，不限制为 Long.MAX_VALUE
+	 */
+	private long nodeLimit = Long.MAX_VALUE;
 
 
 	/**
@@ -47,6 +195,18 @@ public class AI {
 	 *               Prediction: 0 < weight <= 1
 	 */
 	public AI(Board board, short aiNum, double weight) {
+		this(board, aiNum, weight, DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 * 构造器
+	 *
+	 * @param board     棋盘类
+	 * @param aiNum     AI 玩家角色
+	 * @param weight    计算敌我得分时的权重，同上
+	 * @param tableSize 置换表大小（MB）
+	 */
+	public AI(Board board, short aiNum, double weight, int tableSize) {
 		this.board = board;
 		if (aiNum != BLACK && aiNum != WHITE) {
 			throw new ValueOutOfRangeException();
@@ -55,253 +215,372 @@ public class AI {
 		if (weight < 0 || weight > 2) {
 			throw new ValueOutOfRangeException();
 		}
-		AI.weight = weight;
+		this.weight = weight;
+		this.table = new TranspositionTable(tableSize);
+		this.stop = null;
+		clearKillers();
 	}
 
 	/**
-	 * The entry point of application.
-	 * 这里只是在测试一个被遗弃的功能。。。
+	 * 并行搜索时的辅助 AI，在自己的棋盘副本上搜索，与发起搜索的 AI 共享置换表
 	 *
-	 * @param args the input arguments
+	 * @param board  棋盘副本
+	 * @param parent 发起搜索的 AI
+	 * @param stop   停止标记，为 null 时不会被中途停止
 	 */
-	public static void main(String[] args) {
-		AI ai = new AI(new Board(), WHITE, 1);
-		File file = new File("boardCache.cache");
-		try {
-			//noinspection ResultOfMethodCallIgnored
-			file.createNewFile();
-		} catch (IOException e1) {
-			e1.printStackTrace();
+	private AI(Board board, AI parent, AtomicBoolean stop) {
+		this.board = board;
+		this.aiNum = parent.aiNum;
+		this.weight = parent.weight;
+		this.table = parent.table;
+		this.stop = stop;
+		this.verbose = false;
+		this.randomTieBreak = parent.randomTieBreak;
+		for (int i = 0; i < 2; i++) {
+			System.arraycopy(parent.history[i], 0, history[i], 0, 225);
 		}
+		clearKillers();
+	}
 
-		ai.initialize(6, false);
-
-		try (FileOutputStream fileOutputStream = new FileOutputStream("boardCache.cache")) {
-			ObjectOutputStream outputStream = new ObjectOutputStream(fileOutputStream);
-			outputStream.writeObject(ai.board.boardScoreCache);
-			outputStream.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+	/**
+	 * 设置根节点并行搜索的线程数
+	 *
+	 * @param threads 线程数，1 表示不并行
+	 * @throws ValueOutOfRangeException 线程数小于 1
+	 */
+	public void setThreads(int threads) throws ValueOutOfRangeException {
+		if (threads < 1) {
+			throw new ValueOutOfRangeException();
 		}
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.threads = threads;
+		if (threads > 1)
+			pool = new ForkJoinPool(threads);
 	}
 
 	/**
-	 * Initialize board score cache to speed up calculation in first few steps
-	 * **现在已经没用了，因为为了节省内存 boardScoreCache 每次计算时都会清零
+	 * Gets threads.
 	 *
-	 * @param deep depth of min-max search (disabled then read is true)
-	 * @param read whether to read data from file
+	 * @return 根节点并行搜索的线程数
 	 */
-	public void initialize(int deep, boolean read) {
-		if (read) {
-			boolean success = false;
-			try (FileInputStream file = new FileInputStream("boardCache.cache")) {
-				ObjectInputStream inputStream = new ObjectInputStream(file);
-				//noinspection unchecked
-				board.boardScoreCache = (Map<Integer, Board.Score>) inputStream.readObject();
-				success = true;
-			} catch (ClassNotFoundException e) {
-				System.out.println("Data file load fail! File format wrong");
-			} catch (FileNotFoundException e) {
-				System.out.println("Data file does not exist");
-			} catch (IOException e) {
-				System.out.println("Open data file failed!");
-			}
-			if (success)
-				return;
-			else
-				System.out.println("Load data failed!");
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * 设置并行模式，只在线程数大于 1 时有效
+	 *
+	 * @param parallelMode ROOT_SPLIT 或 LAZY_SMP
+	 * @throws ValueOutOfRangeException 模式不存在
+	 */
+	public void setParallelMode(int parallelMode) throws ValueOutOfRangeException {
+		if (parallelMode != ROOT_SPLIT && parallelMode != LAZY_SMP) {
+			throw new ValueOutOfRangeException();
 		}
-		this.board.setChess(7, 7, false);
-		minMaxSearch(deep, new ArrayList<>());
-		this.board.reset();
+		this.parallelMode = parallelMode;
+	}
+
+	/**
+	 * Gets nodes.
+	 *
+	 * @return 上一次搜索的节点数（包括所有辅助线程，以及根节点算杀的节点）
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 设置根节点有多个同分的候选点时是否随机选择
+	 * 关闭后，同样的局面总是得到同样的结果
+	 *
+	 * @param randomTieBreak 是否随机选择
+	 */
+	public void setRandomTieBreak(boolean randomTieBreak) {
+		this.randomTieBreak = randomTieBreak;
+	}
+
+	/**
+	 * 设置根节点同分时随机选择所用的种子，同样的种子得到同样的选择顺序
+	 *
+	 * @param seed 种子
+	 */
+	public void setRandomSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/**
+	 * 把置换表保存到文件，下次启动时可以用 loadTable 读回来，不用重新搜索同样的局面
+	 * 注意：不能在搜索的同时保存
+	 *
+	 * @param path 文件
+	 * @throws IOException 写入失败
+	 */
+	public void saveTable(Path path) throws IOException {
+		table.save(path, weight);
+	}
+
+	/**
+	 * 从文件读取保存的置换表，代替现有的内容
+	 * 版本不同、估分规则或权重不同、损坏或者不完整的文件会被拒绝，此时置换表不变
+	 * 注意：不能在搜索的同时读取
+	 *
+	 * @param path 文件
+	 * @return 读入的条目数
+	 * @throws IOException 读取失败或者文件被拒绝
+	 */
+	public int loadTable(Path path) throws IOException {
+		return table.load(path, weight);
 	}
 
+	/**
+	 * 设置开局库，iterativeDeepening 和 timedSearch 在搜索之前先查找开局库
+	 *
+	 * @param book 开局库，null 表示不使用
+	 */
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
 
 	/**
 	 * 生成候选点以供计算
+	 * 这是 generateMoves 的列表形式，只在搜索以外的地方使用
 	 *
 	 * @param player the player number
 	 * @return List contain all valid points in order
 	 */
-	@SuppressWarnings({"ConstantConditions", "Duplicates"})
 	public List<int[]> generatePossiblePoints(short player) {
-		// Timer.startRecord("generatePossiblePoints");
-		List<int[]> vcxResult = vcx();
-		if (!vcxResult.isEmpty()) return vcxResult;
-
-		List<int[]> five = new ArrayList<>();
-		List<int[]> four = new ArrayList<>();
-		List<int[]> blockedFour = new ArrayList<>();
-		List<int[]> doubleThree = new ArrayList<>();
-		List<int[]> three = new ArrayList<>();
-		List<int[]> two = new ArrayList<>();
-		List<int[]> neighbor = new ArrayList<>();
-		List<int[]> eFour = new ArrayList<>();
-		List<int[]> eBlockedFour = new ArrayList<>();
-		List<int[]> eDoubleThree = new ArrayList<>();
-		List<int[]> eThree = new ArrayList<>();
-		List<int[]> eTwo = new ArrayList<>();
-		ArrayList<int[]> result = new ArrayList<>();
-
-		Map<String, Integer> standards = Board.STANDARDS;
-
-		for (int row = 0; row < 15; row++) {
-			for (int column = 0; column < 15; column++) {
-				if (board.getBoard()[row][column] != EMPTY)
-					continue;
-				if (hasNeighbor(row, column, (board.chessCount < 6) ? 1 : 2, (board.chessCount < 6) ? 1 : 2)) {
-//          int aiScore = board.scorePoint(row, column, player);
-					int aiScore = 0;
-//          int humanScore = board.scorePoint(row, column, (player == WHITE) ? BLACK : WHITE);
-					int humanScore = 0;
-					for (int i = 1; i < 5; i++) {
-						aiScore += board.pointScoreCache.get(player)[i][row][column];
-						humanScore += board.pointScoreCache.get(player == BLACK ? WHITE : BLACK)[i][row][column];
-					}
+//		有必胜序列时只走序列的第一步
+		List<int[]> vcxResult = vcx(player);
+		if (!vcxResult.isEmpty()) return new ArrayList<>(vcxResult.subList(0, 1));
 
-					if (aiScore >= standards.get("5+")) {
-						five.add(0, new int[]{row, column});
-					} else if (humanScore >= standards.get("5+"))
-						five.add(new int[]{row, column});
-					else if (aiScore >= standards.get("4+"))
-						four.add(0, new int[]{row, column});
-					else if (humanScore >= standards.get("4+"))
-						eFour.add(new int[]{row, column});
-					else if (aiScore >= standards.get("4-"))
-						blockedFour.add(0, new int[]{row, column});
-					else if (humanScore >= standards.get("4-"))
-						eBlockedFour.add(new int[]{row, column});
-					else if (aiScore >= standards.get("3+") * 2)
-						doubleThree.add(0, new int[]{row, column});
-					else if (humanScore >= standards.get("3+") * 2)
-						eDoubleThree.add(new int[]{row, column});
-					else if (aiScore >= standards.get("3+"))
-						three.add(0, new int[]{row, column});
-					else if (humanScore >= standards.get("3+"))
-						eThree.add(new int[]{row, column});
-					else if (aiScore >= standards.get("2+"))
-						two.add(0, new int[]{row, column});
-					else if (humanScore >= standards.get("2+"))
-						eTwo.add(new int[]{row, column});
-					else
-						neighbor.add(new int[]{row, column});
-				}
-			}
+		List<int[]> result = new ArrayList<>();
+		int count = generateMoves(player, 0);
+		for (int i = 0; i < count; i++) {
+			result.add(new int[]{moves[0][i] / 15, moves[0][i] % 15});
+		}
+		return result;
+	}
+
+	/**
+	 * 生成候选点，结果写入第 ply 层的预分配数组，不创建任何对象
+	 * 候选点按威胁类型排序（计数排序），同类型内按杀手着法和历史表排序：
+	 * 有连五则只返回连五，有己方活四则只返回己方活四，有对方活四则只返回对方活四；
+	 * 否则依次是双三、冲四、活三；若有双三则到此为止，
+	 * 否则再加上活二（若没有活二则加上其余邻近点），最多 20 个
+	 *
+	 * @param player 下棋玩家
+	 * @param ply    当前层数，结果写入 moves[ply] 和 moveScores[ply]
+	 * @return 候选点数量
+	 */
+	int generateMoves(short player, int ply) {
+		long timer = Timer.start();
+		short enemy = player == BLACK ? WHITE : BLACK;
+		int[] classCount = this.classCount;
+		Arrays.fill(classCount, 0);
+
+//		只考虑周围有棋子的空位（由棋盘增量维护）
+		NeighborSet candidates = board.candidates();
+		int size = candidates.size();
+		for (int i = 0; i < size; i++) {
+			int cell = candidates.get(i);
+			int row = cell / 15, column = cell % 15;
+			int aiScore = board.pointScoreSum(player, row, column);
+			int humanScore = board.pointScoreSum(enemy, row, column);
+			int type = classify(aiScore, humanScore);
+			candidateType[i] = type;
+			candidateScore[i] = aiScore + humanScore;
+			classCount[type]++;
 		}
 
-//		以下所有的 shuffle 都是为了确保每次下子的随机性
-		if (five.size() > 0) {
-			Collections.shuffle(five);
-			// Timer.endRecord("generatePossiblePoints");
-			return five;
-		}
-
-		if (four.size() > 0) {
-			Collections.shuffle(four);
-			// Timer.endRecord("generatePossiblePoints");
-			return four;
-		}
-		if (eFour.size() > 0) {
-			Collections.shuffle(eFour);
-			// Timer.endRecord("generatePossiblePoints");
-			return eFour;
-		}
-
-		if (eFour.size() > 0 && blockedFour.size() == 0) {
-			Collections.shuffle(eFour);
-			// Timer.endRecord("generatePossiblePoints");
-			return eFour;
-		}
-		if (four.size() > 0 && eBlockedFour.size() == 0) {
-			Collections.shuffle(four);
-			// Timer.endRecord("generatePossiblePoints");
-			return four;
-		}
-
-		Collections.shuffle(eFour);
-		Collections.shuffle(four);
-		Collections.shuffle(blockedFour);
-		Collections.shuffle(eBlockedFour);
-		ArrayList<int[]> totalFour = new ArrayList<>(four);
-		totalFour.addAll(eFour);
-		ArrayList<int[]> totalBlockFour = new ArrayList<>(blockedFour);
-		totalBlockFour.addAll(eBlockedFour);
-		if (totalFour.size() > 0) {
-			totalFour.addAll(totalBlockFour);
-			// Timer.endRecord("generatePossiblePoints");
-			return totalFour;
-		}
-
-		Collections.shuffle(doubleThree);
-		Collections.shuffle(eDoubleThree);
-		Collections.shuffle(three);
-		Collections.shuffle(eThree);
-		result.addAll(doubleThree);
-		result.addAll(eDoubleThree);
-		result.addAll(blockedFour);
-		result.addAll(eBlockedFour);
-		result.addAll(three);
-		result.addAll(eThree);
-
-		if (doubleThree.size() > 0 || eDoubleThree.size() > 0) {
-			// Timer.endRecord("generatePossiblePoints");
-			return result;
-		}
-
-		Collections.shuffle(two);
-		Collections.shuffle(eTwo);
-		if (two.size() > 0 || eTwo.size() > 0) {
-			result.addAll(two);
-			result.addAll(eTwo);
+//		根据各类型的数量决定要返回哪些类型以及上限
+		int limit = 20;
+		int from = FIVE_CLASS, to = FIVE_CLASS;
+		if (classCount[FIVE_CLASS] > 0) {
+			limit = Integer.MAX_VALUE;
+		} else if (classCount[FOUR_CLASS] > 0) {
+			from = to = FOUR_CLASS;
+			limit = Integer.MAX_VALUE;
+		} else if (classCount[E_FOUR_CLASS] > 0) {
+			from = to = E_FOUR_CLASS;
+			limit = Integer.MAX_VALUE;
+		} else if (classCount[DOUBLE_THREE_CLASS] > 0 || classCount[E_DOUBLE_THREE_CLASS] > 0) {
+			from = DOUBLE_THREE_CLASS;
+			to = E_THREE_CLASS;
+			limit = Integer.MAX_VALUE;
+		} else if (classCount[TWO_CLASS] > 0 || classCount[E_TWO_CLASS] > 0) {
+			from = DOUBLE_THREE_CLASS;
+			to = E_TWO_CLASS;
 		} else {
-			Collections.shuffle(neighbor);
-			result.addAll(neighbor);
+			from = DOUBLE_THREE_CLASS;
+			to = NEIGHBOR_CLASS;
 		}
 
-		if (result.size() > 20) {
-			// Timer.endRecord("generatePossiblePoints");
+//		计数排序：先算出每个类型的起始位置，再放入
+		int total = 0;
+		for (int type = 0; type < CLASS_COUNT; type++) {
+			int n = (type >= from && type <= to) ? classCount[type] : 0;
+			classCount[type] = total;
+			total += n;
+		}
+		int[] moves = this.moves[ply], scores = this.moveScores[ply];
+		for (int i = 0; i < size; i++) {
+			int type = candidateType[i];
+			if (type < from || type > to)
+				continue;
+			int index = classCount[type]++;
+			int cell = candidates.get(i);
+			moves[index] = cell;
+			scores[index] = candidateScore[i];
+			orderKeys[index] = orderKey(player, ply, cell);
+		}
 
-			return result.subList(0, 20);
-		} else {
-			// Timer.endRecord("generatePossiblePoints");
-			return result;
+//		同类型内按杀手着法、历史分数、棋形分数排序
+		int start = 0;
+		for (int type = from; type <= to; type++) {
+			sortMoves(moves, scores, start, classCount[type]);
+			start = classCount[type];
 		}
+		Timer.end(Timer.GENERATE_MOVES, timer);
+		return Math.min(total, limit);
 	}
 
 	/**
-	 * 判断一个点是否有邻居
+	 * 根据双方在某点的得分判断威胁类型
 	 *
-	 * @param row          行号
-	 * @param column       列数
-	 * @param neighborDist 最大检测邻居的范围
-	 * @param count        至少满足有几个邻居
-	 * @return 是否有邻居
+	 * @param aiScore    己方得分
+	 * @param humanScore 对方得分
+	 * @return 类型，数值越小越优先
 	 */
-	private boolean hasNeighbor(int row, int column, int neighborDist, int count) {
-		// Timer.startRecord("hasNeighbor");
-		for (int i = (row - neighborDist >= 0 ? row - neighborDist : 0);
-		     i < (row + neighborDist <= 14 ? row + neighborDist : 14);
-		     i++) {
-			for (int j = (column - neighborDist >= 0 ? column - neighborDist : 0);
-			     j < (column + neighborDist <= 14 ? column + neighborDist : 14);
-			     j++) {
-				if (board.getBoard()[i][j] != EMPTY) {
-					if (--count == 0) {
-						// Timer.endRecord("hasNeighbor");
-						return true;
-					}
-				}
+	private static int classify(int aiScore, int humanScore) {
+		if (aiScore >= FIVE || humanScore >= FIVE)
+			return FIVE_CLASS;
+		if (aiScore >= FOUR)
+			return FOUR_CLASS;
+		if (humanScore >= FOUR)
+			return E_FOUR_CLASS;
+		if (aiScore >= BLOCKED_FOUR)
+			return BLOCKED_FOUR_CLASS;
+		if (humanScore >= BLOCKED_FOUR)
+			return E_BLOCKED_FOUR_CLASS;
+		if (aiScore >= THREE * 2)
+			return DOUBLE_THREE_CLASS;
+		if (humanScore >= THREE * 2)
+			return E_DOUBLE_THREE_CLASS;
+		if (aiScore >= THREE)
+			return THREE_CLASS;
+		if (humanScore >= THREE)
+			return E_THREE_CLASS;
+		if (aiScore >= TWO)
+			return TWO_CLASS;
+		if (humanScore >= TWO)
+			return E_TWO_CLASS;
+		return NEIGHBOR_CLASS;
+	}
+
+	/**
+	 * 计算候选点在同类型内的排序键：两个杀手着法最优先，其余按历史分数
+	 *
+	 * @param player 下棋玩家
+	 * @param ply    当前层数
+	 * @param cell   位置（row * 15 + column）
+	 * @return 排序键，越大越优先
+	 */
+	private int orderKey(short player, int ply, int cell) {
+		if (cell == killers[ply][0])
+			return Integer.MAX_VALUE;
+		if (cell == killers[ply][1])
+			return Integer.MAX_VALUE - 1;
+		return history[player - BLACK][cell];
+	}
+
+	/**
+	 * 将 [from, to) 范围内的候选点按排序键从大到小排序，键相同时按棋形分数（同时移动对应的分数）
+	 * 每个类型内的候选点很少，所以用插入排序
+	 *
+	 * @param moves  候选点
+	 * @param scores 分数
+	 * @param from   起始（包含）
+	 * @param to     结束（不包含）
+	 */
+	private void sortMoves(int[] moves, int[] scores, int from, int to) {
+		int[] keys = orderKeys;
+		for (int i = from + 1; i < to; i++) {
+			int move = moves[i], score = scores[i], key = keys[i];
+			int j = i - 1;
+			while (j >= from && (keys[j] < key || keys[j] == key && scores[j] < score)) {
+				moves[j + 1] = moves[j];
+				scores[j + 1] = scores[j];
+				keys[j + 1] = keys[j];
+				j--;
+			}
+			moves[j + 1] = move;
+			scores[j + 1] = score;
+			keys[j + 1] = key;
+		}
+	}
+
+	/**
+	 * 记录引起剪枝的着法：更新第 ply 层的杀手着法和历史表
+	 *
+	 * @param player 下棋玩家
+	 * @param ply    当前层数
+	 * @param deep   当前深度，越深的剪枝在历史表中的分数越高
+	 * @param move   着法（row * 15 + column）
+	 */
+	private void recordCutoff(short player, int ply, int deep, int move) {
+		int[] killers = this.killers[ply];
+		if (killers[0] != move) {
+			killers[1] = killers[0];
+			killers[0] = move;
+		}
+		int[] history = this.history[player - BLACK];
+		history[move] += (deep + 1) * (deep + 1);
+		if (history[move] > HISTORY_LIMIT)
+			ageHistory();
+	}
+
+	/**
+	 * 历史表中的分数全部减半，让新的剪枝信息占更大的比重
+	 */
+	private void ageHistory() {
+		for (int[] history : this.history) {
+			for (int i = 0; i < 225; i++) {
+				history[i] >>= 1;
 			}
 		}
-		// Timer.endRecord("hasNeighbor");
-		return false;
 	}
 
+	/**
+	 * 清空所有杀手着法，每次新的搜索开始时调用（上一步棋的杀手着法对新局面用处不大）
+	 */
+	private void clearKillers() {
+		for (int[] killers : this.killers) {
+			killers[0] = killers[1] = TranspositionTable.NO_MOVE;
+		}
+	}
+
+	/**
+	 * 清空置换表、杀手着法、历史表和算杀的缓存，之后的搜索与之前搜索过的局面无关
+	 * 用于同一个 AI 依次分析互不相关的局面（例如 BatchEvaluator），以及需要可重复计时的场合
+	 * 置换表只是作废（见 TranspositionTable.reset），开销与表的大小无关
+	 */
+	void clear() {
+		table.reset();
+		threatSearch.clear();
+		clearKillers();
+		for (int[] history : this.history) {
+			Arrays.fill(history, 0);
+		}
+	}
 
 	/**
 	 * 迭代加深包装函数
-	 * 已经基本上不用迭代加深，因为在 DFS 时已经根据搜索深度进行加权
+	 * 进行迭代加深时使用 timedSearch（不限时间和节点数，最多搜索到 depth 层），
+	 * 每一层的结果用于下一层的着法排序；否则直接搜索到 depth 层
+	 * 开局库中有当前局面时直接返回库中的着法
 	 *
 	 * @param depth 搜索深度
 	 *              若为0则自动判断
@@ -309,6 +588,9 @@ public class AI {
 	 * @return AI 落子点
 	 */
 	public int[] iterativeDeepening(int depth, boolean iter) {
+		int[] bookMove = probeBook();
+		if (bookMove != null) return bookMove;
+
 //		根据棋盘上棋子数自动生成相应搜索深度
 		if (depth == 0) {
 			int count = board.count();
@@ -317,30 +599,113 @@ public class AI {
 //			if (count >= 12) depth = 9;
 		}
 
+		if (iter)
+			return timedSearch(0, 0, depth);
 		List<int[]> candidates = new ArrayList<>();
-		if (!iter) {
-			minMaxSearch(depth, candidates);
-			return candidates.get(0);
+		minMaxSearch(depth, candidates);
+		return candidates.get(0);
+	}
+
+	/**
+	 * 查找开局库
+	 *
+	 * @return 开局库中的最佳着法，没有开局库或者库中没有当前局面时为 null
+	 */
+	private int[] probeBook() {
+		if (book == null) return null;
+		int[] move = book.probe(board, aiNum);
+		if (move != null) nodes = 0;
+		return move;
+	}
+
+	/**
+	 * 限时迭代加深搜索
+	 * 从深度 1 开始每次加深一层，直到用完时间或节点数。
+	 * 每一层都先搜索上一层的最佳着法（根节点候选点按上一层的分数排序），
+	 * 内部节点则由置换表中保存的最佳着法（即上一层的主要变例）优先搜索。
+	 * 中途停止时丢弃未完成的一层，返回最后完成的一层的最佳着法。
+	 * 注意：限时搜索只在当前线程上进行，不使用 setThreads 设置的并行模式
+	 * 开局库中有当前局面时直接返回库中的着法
+	 *
+	 * @param timeBudget 时间预算（毫秒），0 表示不限时
+	 * @param nodeBudget 节点数预算，0 表示不限制
+	 * @return AI 落子点
+	 */
+	public int[] timedSearch(long timeBudget, long nodeBudget) {
+		return timedSearch(timeBudget, nodeBudget, MAX_PLY - 2);
+	}
+
+	/**
+	 * 限时迭代加深搜索，最多搜索到 maxDepth 层（见 timedSearch(long, long)）
+	 *
+	 * @param timeBudget 时间预算（毫秒），0 表示不限时
+	 * @param nodeBudget 节点数预算，0 表示不限制
+	 * @param maxDepth   最大搜索深度
+	 * @return AI 落子点
+	 * @throws ValueOutOfRangeException 最大深度超出范围
+	 */
+	public int[] timedSearch(long timeBudget, long nodeBudget, int maxDepth) throws ValueOutOfRangeException {
+		if (maxDepth < 1 || maxDepth >= MAX_PLY - 1) {
+			throw new ValueOutOfRangeException();
 		}
+		int[] bookMove = probeBook();
+		if (bookMove != null) return bookMove;
+		table.newSearch();
+		clearKillers();
+		ageHistory();
+		nodes = 0;
+		if (board.count() == 0)
+			return new int[]{7, 7};
+
+		List<int[]> points = generatePossiblePoints(aiNum);
+//		若候选点太多，则只计算前十个
+		points = new ArrayList<>(points.size() > 10 ? points.subList(0, 10) : points);
+		if (points.size() == 1)
+			return points.get(0);
 
-		boolean goodSituation = false;
-		for (int i = 2; i <= depth; i += 2) {
-			int result = minMaxSearch(i, candidates);
-			if (result >= Board.STANDARDS.get("4+")) return candidates.get(0);
-			goodSituation = result > 0;
+//		在棋盘副本上搜索，中途停止时不需要恢复棋盘
+		AI searcher = new AI(new Board(board), this, null);
+		searcher.verbose = verbose;
+		searcher.deadline = timeBudget > 0 ? System.nanoTime() + timeBudget * 1000000 : Long.MAX_VALUE;
+		searcher.nodeLimit = nodeBudget > 0 ? nodeBudget : Long.MAX_VALUE;
+		int[] best = points.get(0);
+		try {
+			for (int depth = 1; depth <= maxDepth; depth++) {
+				int[] values = searcher.searchRoot(points, depth);
+//				按分数从高到低排序（稳定排序，同分时上一层的顺序不变），下一层先搜索最好的
+				Integer[] order = new Integer[points.size()];
+				for (int i = 0; i < order.length; i++) order[i] = i;
+				Arrays.sort(order, (a, b) -> Integer.compare(values[b], values[a]));
+				List<int[]> sorted = new ArrayList<>();
+				for (int i : order) sorted.add(points.get(i));
+				points = sorted;
+				best = points.get(0);
+				if (values[order[0]] >= MATE_BOUND) break;
+			}
+		} catch (SearchAbortedException ignored) {
+//			时间或节点数用完
 		}
-		return goodSituation ? candidates.get(0) : candidates.get(candidates.size() - 1);
+		nodes += searcher.nodes;
+		for (int i = 0; i < 2; i++) {
+			System.arraycopy(searcher.history[i], 0, history[i], 0, 225);
+		}
+		return best;
 	}
 
 	/**
 	 * 极大极小值搜索
+	 * 只有一个候选点时（算杀找到必胜序列，或者必须挡住对方的冲四）不比较候选点，但仍然返回真实的分数：
+	 * 必胜序列得 MATE - 序列长度，其它情况搜索这一步的分数
 	 *
 	 * @param depth   搜索深度
 	 * @param outcome 储存候选点的列表
 	 * @return 当前点的分数
 	 */
 	int minMaxSearch(int depth, List<int[]> outcome) {
-		board.boardScoreCache.clear();
+		table.newSearch();
+		clearKillers();
+		ageHistory();
+		nodes = 0;
 		if (board.count() == 0) {
 			outcome.add(new int[]{7, 7});
 			return 0;
@@ -351,114 +716,341 @@ public class AI {
 //		若候选点太多，则只计算前十个
 		points = points.size() > 10 ? points.subList(0, 10) : points;
 		if (points.size() == 1) {
-			outcome.add(points.get(0));
-			return 0;
+			int[] point = points.get(0);
+			outcome.add(point);
+//			算杀的结果已经在缓存中，不会重新搜索
+			List<int[]> line = vcx(aiNum);
+			if (!line.isEmpty())
+				return MATE - line.size();
+			return searchMove(point[0], point[1], depth);
 		}
+		int[] values;
+		if (threads == 1)
+			values = searchRoot(points, depth);
+		else if (parallelMode == ROOT_SPLIT)
+			values = searchRootParallel(points, depth);
+		else
+			values = searchLazySmp(points, depth);
 		List<int[]> candidates = new ArrayList<>();
-		int c = 1;
-		System.out.print(points.size() + ": ");
-		for (int[] point : points) {
-			System.out.printf("%d ", c++);
-			board.setChess(point[0], point[1], aiNum);
-			int curV = (int) minSearch(
-							depth,
-							Integer.MIN_VALUE,
-							Integer.MAX_VALUE
-			);
+		for (int i = 0; i < points.size(); i++) {
+			int curV = values[i];
 			if (curV == maxV) {
-				candidates.add(point);
+				candidates.add(points.get(i));
 			} else if (curV > maxV) {
 				maxV = curV;
 				candidates.clear();
-				candidates.add(point);
+				candidates.add(points.get(i));
 			}
-			board.setChess(point[0], point[1], Board.EMPTY);
 		}
-		System.out.println();
-		Collections.shuffle(candidates);
-		outcome.add(candidates.get(0));
+		outcome.add(candidates.get(randomTieBreak ? random.nextInt(candidates.size()) : 0));
 		return maxV;
 	}
 
 	/**
-	 * 最小值搜索
-	 * 在模拟敌方下棋时，要搜索最小值
+	 * 搜索 AI 在指定位置落子后的分数，深度与 minMaxSearch 的根节点候选点相同，
+	 * 所以可以直接与 minMaxSearch 的结果比较（例如判断一步棋比最佳着法差多少）
+	 * 节点数累加到 getNodes 中
 	 *
-	 * @param deep  当前深度
-	 * @param alpha 最大值
-	 * @param beta  最小值
-	 * @return 最小分数
+	 * @param row    行数
+	 * @param column 列数
+	 * @param depth  搜索深度
+	 * @return 落子后的分数（从 AI 的角度）
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 * @throws RedundantChessException  该位置已有棋子
 	 */
-	double minSearch(int deep, double alpha, double beta) {
-		// Timer.startRecord("minSearch");
-		int score = board.scoreBoard(aiNum == WHITE ? BLACK : WHITE, weight);
-//		若到达底层或胜负已分，则直接返回
-		if (deep < 0 || board.isEnd() != CONTINUE) {
-			// Timer.endRecord("minSearch");
-			return score;
+	int searchMove(int row, int column, int depth) throws ValueOutOfRangeException, RedundantChessException {
+		board.makeMove(row, column, aiNum);
+		try {
+			return -negamax(depth, 1, -INFINITY, INFINITY);
+		} finally {
+			board.unmakeMove();
 		}
+	}
 
-		List<int[]> points = generatePossiblePoints(aiNum == WHITE ? BLACK : WHITE);
-		//		若候选点太多，则只计算前十个
-		points = points.size() > 10 ? points.subList(0, 10) : points;
-		for (int[] currentPoint : points) {
-			board.setChess(currentPoint[0], currentPoint[1], (aiNum == BLACK) ? WHITE : BLACK);
-//			计算得分并根据深度加权
-			double currentValue = maxSearch(deep - 1, alpha, beta) * (1 + deep / 10.);
-			board.setChess(currentPoint[0], currentPoint[1], Board.EMPTY);
-			beta = Math.min(beta, currentValue);
-//      剪枝
-			if (beta < alpha)
-				break;
+	/**
+	 * 依次搜索每一个根节点候选点
+	 *
+	 * @param points 根节点候选点
+	 * @param depth  搜索深度
+	 * @return 每个候选点的分数
+	 */
+	private int[] searchRoot(List<int[]> points, int depth) {
+		long timer = Timer.start();
+		int[] values = new int[points.size()];
+		int alpha = -INFINITY;
+		if (verbose) System.out.print(points.size() + ": ");
+		for (int i = 0; i < points.size(); i++) {
+			int[] point = points.get(i);
+			if (verbose) System.out.printf("%d ", i + 1);
+			board.makeMove(point[0], point[1], aiNum);
+			int value;
+			if (i == 0) {
+				value = -negamax(depth, 1, -INFINITY, INFINITY);
+			} else {
+//				零窗口试探是否不比当前最好的差（同分的候选点也要算出准确分数，供随机选择）
+				value = -negamax(depth, 1, -alpha, -alpha + 1);
+				if (value >= alpha)
+					value = -negamax(depth, 1, -INFINITY, -alpha + 1);
+			}
+			board.unmakeMove();
+			values[i] = value;
+			alpha = Math.max(alpha, value);
+		}
+		if (verbose) System.out.println();
+		Timer.end(Timer.SEARCH, timer);
+		return values;
+	}
+
+	/**
+	 * 并行搜索每一个根节点候选点
+	 * 每个候选点是线程池中的一个任务，在自己的棋盘副本上搜索；
+	 * 所有任务共享当前最好的分数作为 alpha，后开始的任务因此依然可以剪枝
+	 *
+	 * @param points 根节点候选点
+	 * @param depth  搜索深度
+	 * @return 每个候选点的分数（被剪枝的候选点分数比最好的分数低）
+	 */
+	private int[] searchRootParallel(List<int[]> points, int depth) {
+		AtomicInteger alpha = new AtomicInteger(-INFINITY);
+		AtomicLong helperNodes = new AtomicLong();
+		List<ForkJoinTask<Integer>> tasks = new ArrayList<>();
+		for (int[] point : points) {
+			tasks.add(pool.submit(() -> {
+				AI helper = new AI(new Board(board), this, null);
+				helper.board.makeMove(point[0], point[1], aiNum);
+				int value = -helper.negamax(depth, 1, -INFINITY, -alpha.get() + 1);
+				alpha.accumulateAndGet(value, Math::max);
+				helperNodes.addAndGet(helper.nodes);
+				return value;
+			}));
+		}
+		int[] values = new int[points.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = tasks.get(i).join();
+		}
+		nodes += helperNodes.get();
+		return values;
+	}
+
+	/**
+	 * Lazy SMP 并行搜索
+	 * 主线程正常搜索；其余线程在自己的棋盘副本上搜索同样的根节点，
+	 * 但根节点顺序不同（候选点循环移位，各自的杀手着法和历史表也使内部节点顺序不同），
+	 * 奇数号线程多搜索一层，搜索完成后继续加深。
+	 * 所有线程共享置换表，辅助线程的结果通过置换表让主线程更快地剪枝。
+	 * 主线程完成后停止所有辅助线程，结果只取主线程的。
+	 *
+	 * @param points 根节点候选点
+	 * @param depth  搜索深度
+	 * @return 每个候选点的分数
+	 */
+	private int[] searchLazySmp(List<int[]> points, int depth) {
+		AtomicBoolean stop = new AtomicBoolean(false);
+		AtomicLong helperNodes = new AtomicLong();
+		List<ForkJoinTask<?>> helpers = new ArrayList<>();
+		for (int i = 1; i < threads; i++) {
+			// 棋盘必须在主线程开始搜索之前复制
+			AI helper = new AI(new Board(board), this, stop);
+			List<int[]> order = new ArrayList<>(points);
+			Collections.rotate(order, -i);
+			int helperDepth = depth + i % 2;
+			helpers.add(pool.submit(() -> {
+				try {
+					for (int d = helperDepth; d < MAX_PLY - 1; d++) {
+						helper.searchRoot(order, d);
+					}
+				} catch (SearchAbortedException ignored) {
+				}
+				helperNodes.addAndGet(helper.nodes);
+			}));
+		}
+		try {
+			return searchRoot(points, depth);
+		} finally {
+			stop.set(true);
+			for (ForkJoinTask<?> helper : helpers) {
+				helper.join();
+			}
+			nodes += helperNodes.get();
 		}
-		// Timer.endRecord("minSearch");
-		return beta;
 	}
 
 	/**
-	 * 最大值搜索
-	 * 在模拟AI方落子时，要搜索最大值
-	 * 最大值搜索其实和最小值搜索大同小异
+	 * 负极大值搜索（主要变例搜索）
+	 * 分数总是从当前下棋一方的角度计算，对方的分数取负即可，所以极大、极小两种节点共用一个函数。
+	 * 第一个候选点用完整窗口搜索，其余的先用零窗口试探，只有试探结果落在窗口内时才重新搜索。
+	 * 已分胜负的局面返回 ±(MATE - ply)，越快取胜分数越高。
 	 *
 	 * @param deep  当前深度
-	 * @param alpha 最大值
-	 * @param beta  最小值
-	 * @return 最大分数
+	 * @param ply   当前层数（根节点为 0，偶数层是 AI 下棋）
+	 * @param alpha 下界
+	 * @param beta  上界
+	 * @return 当前下棋一方的分数
 	 */
-	private double maxSearch(int deep, double alpha, double beta) {
-		// Timer.startRecord("maxSearch");
-		int score = board.scoreBoard(aiNum, weight);
-		if (deep < 0 || board.isEnd() != CONTINUE) {
-			// Timer.endRecord("maxSearch");
-			return score;
+	int negamax(int deep, int ply, int alpha, int beta) {
+		checkAbort();
+		short player = (ply & 1) == 0 ? aiNum : (aiNum == BLACK) ? WHITE : BLACK;
+//		若胜负已分或到达底层，则直接返回
+		int state = board.isEnd();
+		if (state != CONTINUE)
+			return state == Board.TIE ? 0 : state == player ? MATE - ply : ply - MATE;
+		if (deep < 0 || ply >= MAX_PLY)
+			return evaluate(player);
+
+//		查询置换表
+		long key = player == aiNum ? board.getZobristKey() ^ MAX_NODE_KEY : board.getZobristKey();
+		long entry = table.probe(key);
+		int tableMove = TranspositionTable.NO_MOVE;
+		if (entry != 0) {
+			if (TranspositionTable.depth(entry) >= deep) {
+				int tableScore = fromTable(TranspositionTable.score(entry), ply);
+				switch (TranspositionTable.bound(entry)) {
+					case TranspositionTable.EXACT:
+						return tableScore;
+					case TranspositionTable.LOWER:
+						if (tableScore >= beta) return tableScore;
+						break;
+					case TranspositionTable.UPPER:
+						if (tableScore <= alpha) return tableScore;
+						break;
+				}
+			}
+			tableMove = TranspositionTable.move(entry);
 		}
 
-		List<int[]> points = generatePossiblePoints(aiNum);
-		points = points.size() > 10 ? points.subList(0, 10) : points;
-		for (int[] currentPoint : points) {
-			board.setChess(currentPoint[0], currentPoint[1], aiNum);
-			double currentValue = minSearch(deep - 1, alpha, beta) * (1 + deep / 10.);
-			board.setChess(currentPoint[0], currentPoint[1], Board.EMPTY);
-			alpha = Math.max(alpha, currentValue);
-//      Prune
-			if (beta < alpha)
-				break;
+		int[] points = moves[ply];
+//		若候选点太多，则只计算前十个
+		int count = Math.min(generateMoves(player, ply), 10);
+		if (count == 0)
+			return evaluate(player);
+		orderMoves(ply, count, tableMove);
+		int alphaOrigin = alpha;
+		int bestValue = -INFINITY;
+		int bestMove = TranspositionTable.NO_MOVE;
+		for (int i = 0; i < count; i++) {
+			int row = points[i] / 15, column = points[i] % 15;
+			board.makeMove(row, column, player);
+			int value;
+			if (i == 0) {
+				value = -negamax(deep - 1, ply + 1, -beta, -alpha);
+			} else {
+//				零窗口试探，证明这一步不比当前最好的更好
+				value = -negamax(deep - 1, ply + 1, -alpha - 1, -alpha);
+				if (value > alpha && value < beta)
+					value = -negamax(deep - 1, ply + 1, -beta, -alpha);
+			}
+			board.unmakeMove();
+			if (value > bestValue) {
+				bestValue = value;
+				bestMove = points[i];
+				alpha = Math.max(alpha, value);
+//				剪枝
+				if (alpha >= beta) {
+					recordCutoff(player, ply, deep, bestMove);
+					break;
+				}
+			}
 		}
-		// Timer.endRecord("maxSearch");
-		return alpha;
+		int bound = bestValue >= beta ? TranspositionTable.LOWER
+						: bestValue <= alphaOrigin ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+		table.store(key, deep, bound, toTable(bestValue, ply), bestMove);
+		return bestValue;
 	}
 
 	/**
-	 * 算杀
-	 * 尚未决定是否需要实现
+	 * 静态评估，从下棋一方的角度给棋盘打分
+	 * 结果限制在必胜分数以内，保证不会被当作已分胜负
+	 *
+	 * @param player 下棋一方
+	 * @return 分数
+	 */
+	private int evaluate(short player) {
+		int score = board.scoreBoard(player, weight);
+		return Math.max(-MATE_BOUND + 1, Math.min(MATE_BOUND - 1, score));
+	}
+
+	/**
+	 * 记录节点数，并检查是否需要停止搜索（其它线程已完成、时间或节点数用完）
+	 *
+	 * @throws SearchAbortedException 需要停止搜索
+	 */
+	private void checkAbort() throws SearchAbortedException {
+		nodes++;
+		if (stop != null && stop.get())
+			throw new SearchAbortedException();
+		if (nodes >= nodeLimit || (nodes & 0xFF) == 0 && System.nanoTime() > deadline)
+			throw new SearchAbortedException();
+	}
+
+	/**
+	 * 将分数转换为置换表中储存的分数
+	 * 必胜/必败分数与层数有关，储存时改为相对于当前节点的距离，这样在其它层数读出时依然正确
+	 *
+	 * @param score 搜索得到的分数
+	 * @param ply   当前层数
+	 * @return 储存的分数
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= MATE_BOUND)
+			return score + ply;
+		if (score <= -MATE_BOUND)
+			return score - ply;
+		return score;
+	}
+
+	/**
+	 * 将置换表中储存的分数转换回当前层数的分数（toTable 的逆运算）
 	 *
-	 * @return 候选名单
+	 * @param score 储存的分数
+	 * @param ply   当前层数
+	 * @return 分数
 	 */
-	public List<int[]> vcx() {
-		List<int[]> outcome = new ArrayList<>();
-//		TODO
+	private static int fromTable(int score, int ply) {
+		if (score >= MATE_BOUND)
+			return score - ply;
+		if (score <= -MATE_BOUND)
+			return score + ply;
+		return score;
+	}
 
+	/**
+	 * 将置换表中记录的最佳着法移到第 ply 层候选点的最前面（在前 count 个中查找）
+	 *
+	 * @param ply       层数
+	 * @param count     要搜索的候选点数量
+	 * @param tableMove 置换表中的最佳着法（row * 15 + column）
+	 */
+	private void orderMoves(int ply, int count, int tableMove) {
+		if (tableMove == TranspositionTable.NO_MOVE)
+			return;
+		int[] moves = this.moves[ply], scores = this.moveScores[ply];
+		for (int i = 1; i < count; i++) {
+			if (moves[i] == tableMove) {
+				int score = scores[i];
+				System.arraycopy(moves, 0, moves, 1, i);
+				System.arraycopy(scores, 0, scores, 1, i);
+				moves[0] = tableMove;
+				scores[0] = score;
+				return;
+			}
+		}
+	}
 
+	/**
+	 * 算杀
+	 * 先搜索 VCF（连续冲四），找不到时再搜索 VCT（连续冲四或活三）
+	 * 算杀的节点数计入 nodes
+	 *
+	 * @param player 进攻方（轮到该玩家下棋）
+	 * @return 必胜序列（进攻方、防守方交替），没有找到时为空
+	 */
+	public List<int[]> vcx(short player) {
+		List<int[]> outcome = threatSearch.search(board, player, ThreatSearch.VCF, VCF_DEPTH, THREAT_NODE_LIMIT);
+		nodes += threatSearch.getNodes();
+		if (outcome.isEmpty()) {
+			outcome = threatSearch.search(board, player, ThreatSearch.VCT, VCT_DEPTH, THREAT_NODE_LIMIT);
+			nodes += threatSearch.getNodes();
+		}
 		return outcome;
 	}
 
@@ -0,0 +1,461 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量局面评估
+ * 用于离线分析（开局统计、对局复盘）：输入一串局面，在线程池上并行地各自搜索到固定深度，
+ * 按输入顺序依次返回每个局面的最佳着法、分数、深度和节点数。
+ * <p>
+ * 每个工作线程有自己的 Board 和 AI，分析新局面时用 Board.load 载入，不重新分配；
+ * 每个局面搜索前都会清空 AI 的置换表和历史表，并关闭随机选择，所以每个局面的着法和分数与局面的顺序和分配到的线程无关。
+ * 同时在搜索的局面数有上限，输入可以是很长的流，不需要全部读入内存。
+ * <p>
+ * 分析的输入常有重复的局面（例如许多对局共同的开局），所以已经评估过的局面的分数和最佳着法储存在一个
+ * 容量固定的 EvalCache 中，再次遇到时直接返回，不再搜索（结果的节点数为 0）。
+ * 缓存只在取结果的线程上读写：取出局面时查找，取走结果时储存，所以是否命中只与输入的顺序和同时搜索的局面数有关。
+ * <p>
+ * Evaluates a stream of positions concurrently on a worker pool and streams the results back in input order.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class BatchEvaluator implements AutoCloseable {
+	/**
+	 * 每个工作线程所用置换表的默认大小（MB）
+	 */
+	static final int DEFAULT_TABLE_SIZE = 4;
+	/**
+	 * 每个工作线程最多排队的局面数，决定同时在搜索（或已经完成但还没被取走）的局面数
+	 */
+	private static final int QUEUE_PER_WORKER = 4;
+	/**
+	 * 轮到白棋时与局面的键异或
+	 */
+	private static final long WHITE_TO_MOVE = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * 搜索深度
+	 */
+	private final int depth;
+	/**
+	 * 计算敌我得分时的权重，见 AI 的构造器
+	 */
+	private final double weight;
+	/**
+	 * 工作线程数
+	 */
+	private final int workers;
+	/**
+	 * 线程池
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * 每个工作线程的棋盘和 AI，第一次使用时创建，之后一直复用
+	 */
+	private final ThreadLocal<Worker> worker;
+	/**
+	 * 已经评估过的局面：键 -> 分数、最佳着法（row * 15 + column），用自己加锁
+	 */
+	private final EvalCache cache = new EvalCache(EvalCache.DEFAULT_CAPACITY);
+
+	/**
+	 * 构造器，每个 CPU 一个工作线程
+	 *
+	 * @param depth  搜索深度
+	 * @param weight 计算敌我得分时的权重
+	 */
+	public BatchEvaluator(int depth, double weight) {
+		this(depth, weight, Runtime.getRuntime().availableProcessors(), DEFAULT_TABLE_SIZE);
+	}
+
+	/**
+	 * 构造器
+	 *
+	 * @param depth     搜索深度
+	 * @param weight    计算敌我得分时的权重
+	 * @param workers   工作线程数
+	 * @param tableSize 每个工作线程所用置换表的大小（MB）
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 */
+	public BatchEvaluator(int depth, double weight, int workers, int tableSize) throws ValueOutOfRangeException {
+		if (depth < 1 || depth >= AI.MAX_PLY - 1 || workers < 1 || tableSize <= 0 || weight < 0 || weight > 2) {
+			throw new ValueOutOfRangeException();
+		}
+		this.depth = depth;
+		this.weight = weight;
+		this.workers = workers;
+		this.pool = new ForkJoinPool(workers);
+		this.worker = ThreadLocal.withInitial(() -> new Worker(weight, tableSize));
+	}
+
+	/**
+	 * 读取标准输入，每行一个局面（着法序列，见 Position.fromMoves），输出每个局面的结果，
+	 * 最后在标准错误输出总的局面数和速度
+	 *
+	 * @param args 搜索深度（默认 4），工作线程数（默认 CPU 数）
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		long count = 0, nodes = 0;
+		try (BatchEvaluator evaluator = new BatchEvaluator(depth, 1, workers, DEFAULT_TABLE_SIZE);
+		     BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
+			Iterator<Result> results = evaluator.evaluate(
+							reader.lines().filter(line -> !line.trim().isEmpty()).map(Position::fromMoves).iterator());
+			while (results.hasNext()) {
+				Result result = results.next();
+				System.out.println(result);
+				count++;
+				nodes += result.getNodes();
+			}
+			System.err.println("Cache: " + evaluator.getCacheStatistics());
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d positions, %d nodes, %.2f s, %.1f positions/s%n", count, nodes, seconds, count / seconds);
+
+	}
+
+	/**
+	 * 解析着法序列
+	 * 格式：以空白分隔的 "row,column"，例如 "7,7 7,8 8,8"
+	 *
+	 * @param moves 着法序列
+	 * @return 每一步 {row, column}，不检查是否重复
+	 * @throws ValueOutOfRangeException 格式错误或者坐标超出范围
+	 */
+	static List<int[]> parseMoves(String moves) throws ValueOutOfRangeException {
+		List<int[]> result = new ArrayList<>();
+		for (String move : moves.trim().split("\\s+")) {
+			if (move.isEmpty())
+				continue;
+			int row, column;
+			try {
+				String[] parts = move.split(",");
+				if (parts.length != 2)
+					throw new ValueOutOfRangeException();
+				row = Integer.parseInt(parts[0].trim());
+				column = Integer.parseInt(parts[1].trim());
+			} catch (NumberFormatException e) {
+				throw new ValueOutOfRangeException();
+			}
+			if (row < 0 || row >= 15 || column < 0 || column >= 15) {
+				throw new ValueOutOfRangeException();
+			}
+			result.add(new int[]{row, column});
+		}
+		return result;
+	}
+
+	/**
+	 * 评估一串局面
+	 * 返回的迭代器按需从输入中取出局面交给线程池，结果按输入的顺序返回
+	 *
+	 * @param positions 局面
+	 * @return 每个局面的结果，与输入一一对应
+	 */
+	public Iterator<Result> evaluate(Iterator<Position> positions) {
+		return new Iterator<Result>() {
+			private final ArrayDeque<ForkJoinTask<Result>> pending = new ArrayDeque<>();
+			/**
+			 * 与 pending 一一对应：需要储存到缓存的局面的键，结果来自缓存时为 null
+			 */
+			private final ArrayDeque<Long> keys = new ArrayDeque<>();
+
+			@Override
+			public boolean hasNext() {
+				fill();
+				return !pending.isEmpty();
+			}
+
+			@Override
+			public Result next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Result result = pending.poll().join();
+				long key = keys.poll();
+				if (result.move != null) {
+					synchronized (cache) {
+						cache.put(key, result.score, result.move[0] * 15 + result.move[1]);
+					}
+				}
+				fill();
+				return result;
+			}
+
+			/**
+			 * 从输入中取出局面提交给线程池，直到队列满或者输入用完
+			 */
+			private void fill() {
+				while (pending.size() < workers * QUEUE_PER_WORKER && positions.hasNext()) {
+					Position position = positions.next();
+					long key = position.key();
+					long entry;
+					synchronized (cache) {
+						entry = cache.get(key);
+					}
+					if (entry == EvalCache.MISS) {
+						pending.add(pool.submit(() -> worker.get().evaluate(position, depth)));
+					} else {
+						int cell = EvalCache.second(entry);
+						Result cached = new Result(new int[]{cell / 15, cell % 15}, EvalCache.first(entry), depth, 0);
+//						在当前线程上直接完成，不经过线程池
+						ForkJoinTask<Result> task = ForkJoinTask.adapt(() -> cached);
+						task.invoke();
+						pending.add(task);
+					}
+					keys.add(key);
+				}
+			}
+		};
+	}
+
+	/**
+	 * 评估一串局面（Stream 形式），结果按输入的顺序排列
+	 *
+	 * @param positions 局面
+	 * @return 每个局面的结果，与输入一一对应
+	 */
+	public Stream<Result> evaluate(Stream<Position> positions) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(evaluate(positions.iterator()),
+						Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * 评估一组局面
+	 *
+	 * @param positions 局面
+	 * @return 每个局面的结果，与输入一一对应
+	 */
+	public List<Result> evaluateAll(List<Position> positions) {
+		List<Result> results = new ArrayList<>(positions.size());
+		evaluate(positions.iterator()).forEachRemaining(results::add);
+		return results;
+	}
+
+	/**
+	 * Gets depth.
+	 *
+	 * @return 搜索深度
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Gets workers.
+	 *
+	 * @return 工作线程数
+	 */
+	public int getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * 结果缓存的统计
+	 *
+	 * @return 表项数、命中、未命中和淘汰次数
+	 */
+	public String getCacheStatistics() {
+		synchronized (cache) {
+			return cache.toString();
+		}
+	}
+
+	/**
+	 * 关闭线程池，已经提交的局面会继续搜索完
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * 一个待评估的局面
+	 */
+	public static class Position {
+		/**
+		 * 棋盘，格式与 Board(short[][], short) 相同
+		 */
+		private final short[][] board;
+		/**
+		 * 当前玩家（BLACK, WHITE）
+		 */
+		private final short playerTurn;
+
+		/**
+		 * 构造器
+		 *
+		 * @param board      棋盘，格式与 Board(short[][], short) 相同，之后修改它不影响这个局面
+		 * @param playerTurn 当前玩家（BLACK, WHITE）
+		 */
+		public Position(short[][] board, short playerTurn) {
+			this.board = new short[board.length][];
+			for (int i = 0; i < board.length; i++) {
+				this.board[i] = board[i].clone();
+			}
+			this.playerTurn = playerTurn;
+		}
+
+		/**
+		 * 从着法序列得到局面
+		 * 格式：以空白分隔的 "row,column"，例如 "7,7 7,8 8,8"，黑棋先下，之后轮流
+		 *
+		 * @param moves 着法序列
+		 * @return 局面
+		 * @throws ValueOutOfRangeException 格式错误或者坐标超出范围
+		 * @throws RedundantChessException  同一位置下了两次
+		 */
+		public static Position fromMoves(String moves) throws ValueOutOfRangeException, RedundantChessException {
+			short[][] board = new short[15][15];
+			for (short[] row : board) {
+				Arrays.fill(row, Board.EMPTY);
+			}
+			short player = Board.BLACK;
+			for (int[] move : parseMoves(moves)) {
+				if (board[move[0]][move[1]] != Board.EMPTY) {
+					throw new RedundantChessException();
+				}
+				board[move[0]][move[1]] = player;
+				player = player == Board.BLACK ? Board.WHITE : Board.BLACK;
+			}
+			return new Position(board, player);
+		}
+
+		/**
+		 * Gets player turn.
+		 *
+		 * @return 当前玩家
+		 */
+		public short getPlayerTurn() {
+			return playerTurn;
+		}
+
+		/**
+		 * 局面的键：棋子的 Zobrist 键（与 Board.getZobristKey 相同）再区分轮到哪一方
+		 *
+		 * @return 键
+		 */
+		long key() {
+			long key = playerTurn == Board.WHITE ? WHITE_TO_MOVE : 0;
+			for (int i = 0; i < 15; i++) {
+				for (int j = 0; j < 15; j++) {
+					key ^= Board.zobrist(i, j, board[i][j]);
+				}
+			}
+			return key;
+		}
+	}
+
+	/**
+	 * 一个局面的评估结果
+	 */
+	public static class Result {
+		/**
+		 * 最佳着法 {row, column}，局面已分胜负时为 null
+		 */
+		private final int[] move;
+		/**
+		 * 分数（从当前玩家的角度）、搜索深度
+		 */
+		private final int score, depth;
+		/**
+		 * 搜索的节点数，结果来自缓存时为 0
+		 */
+		private final long nodes;
+
+		Result(int[] move, int score, int depth, long nodes) {
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Gets move.
+		 *
+		 * @return 最佳着法 {row, column}，局面已分胜负时为 null
+		 */
+		public int[] getMove() {
+			return move == null ? null : move.clone();
+		}
+
+		/**
+		 * Gets score.
+		 *
+		 * @return 分数（从当前玩家的角度）
+		 */
+		public int getScore() {
+			return score;
+		}
+
+		/**
+		 * Gets depth.
+		 *
+		 * @return 搜索深度，局面已分胜负时为 0
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Gets nodes.
+		 *
+		 * @return 搜索的节点数，结果来自缓存时为 0
+		 */
+		public long getNodes() {
+			return nodes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("move = %s, score = %d, depth = %d, nodes = %d",
+							move == null ? "-" : move[0] + "," + move[1], score, depth, nodes);
+		}
+	}
+
+	/**
+	 * 工作线程自己的棋盘和 AI
+	 */
+	private static class Worker {
+		private final Board board = new Board();
+		private final AI ai;
+
+		Worker(double weight, int tableSize) {
+			ai = new AI(board, Board.BLACK, weight, tableSize);
+			ai.verbose = false;
+			ai.setRandomTieBreak(false);
+		}
+
+		/**
+		 * 载入局面并搜索
+		 *
+		 * @param position 局面
+		 * @param depth    搜索深度
+		 * @return 结果
+		 */
+		Result evaluate(Position position, int depth) {
+			board.load(position.board, position.playerTurn);
+			if (board.isEnd() != Board.CONTINUE)
+				return new Result(null, 0, 0, 0);
+			ai.aiNum = position.playerTurn;
+			ai.clear();
+			List<int[]> outcome = new ArrayList<>();
+			int score = ai.minMaxSearch(depth, outcome);
+			return new Result(outcome.get(0), score, depth, ai.getNodes());
+		}
+	}
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试（bench 命令）
+ * 对一组内置的局面做固定深度的搜索，随机数使用固定的种子，所以同样的代码总是搜索同样的节点。
+ * 输出总节点数（包括根节点算杀的节点）、用时、每秒节点数（NPS）以及一个签名：
+ * 签名由每个局面的节点数、最佳着法和分数计算，搜索的行为有任何改变（剪枝、排序、估分……）签名都会改变，
+ * 只改变速度的优化则不会改变签名。
+ * <p>
+ * 也可以用多个线程搜索（见 AI.setThreads），用来测量并行搜索随线程数的加速：
+ * 对比同一深度下 1、2、4、8 个线程的用时。多线程时节点数和签名与线程的调度有关，每次运行可能不同。
+ * <p>
+ * A deterministic fixed-depth macro benchmark reporting nodes, time, NPS and a node-count signature.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class Bench {
+	/**
+	 * 默认搜索深度
+	 */
+	static final int DEFAULT_DEPTH = 7;
+	/**
+	 * 随机数种子
+	 */
+	private static final long SEED = 20190527L;
+	/**
+	 * 内置局面：着法序列（格式见 BatchEvaluator.parseMoves），黑棋先下，轮到下一步的一方搜索
+	 * 包括开局、中局，以及对方有连续冲四威胁、必须防守的局面
+	 */
+	static final String[] POSITIONS = {
+					"7,7 6,6 7,5",
+					"7,7 6,6 7,5 8,6 7,6 7,8",
+					"7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7",
+					"7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7 5,8 8,7 9,7 7,4 7,3",
+					"7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7 5,8 8,7 9,7 7,4 7,3 6,3 9,6 9,4 10,3",
+					"7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7 5,8 8,7 9,7 7,4 7,3 6,3 9,6 9,4 10,3 9,8 6,8 4,8 5,7 4,6",
+					"7,7 6,6 7,5 8,6 7,6 7,8 8,5 6,5 6,7 5,8 8,7 9,7 7,4 7,3 6,3 9,6 9,4 10,3 9,8 6,8 4,8 5,7 4,6 4,7 5,9 3,6 6,9 7,9",
+					"7,7 7,6 7,8 7,10 7,9 10,4 8,6 5,11 9,5 3,3 6,10",
+					"7,7 8,8 6,8 8,6 8,7 6,6 9,6"
+	};
+
+	/**
+	 * 运行基准测试
+	 *
+	 * @param args 搜索深度（默认 DEFAULT_DEPTH），线程数（默认 1），并行模式（smp 或 split，默认 smp）
+	 */
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		int mode = args.length > 2 && args[2].equals("split") ? AI.ROOT_SPLIT : AI.LAZY_SMP;
+		Timer.valid = false;
+		long[] result = run(depth, threads, mode, true);
+		System.out.println("===========================");
+		System.out.printf("Threads         : %d%s%n", threads,
+						threads == 1 ? "" : mode == AI.LAZY_SMP ? " (Lazy SMP)" : " (root split)");
+		System.out.printf("Total time (ms) : %d%n", result[1] / 1000000);
+		System.out.printf("Nodes searched  : %d%n", result[0]);
+		System.out.printf("Nodes/second    : %d%n", result[1] == 0 ? 0 : result[0] * 1000000000L / result[1]);
+		System.out.printf("Signature       : %016x%n", result[2]);
+	}
+
+	/**
+	 * 依次搜索所有内置局面
+	 * 每个局面使用新的棋盘和 AI，互不影响
+	 *
+	 * @param depth   搜索深度
+	 * @param threads 线程数，1 表示不并行
+	 * @param mode    并行模式（AI.ROOT_SPLIT, AI.LAZY_SMP），只在线程数大于 1 时有效
+	 * @param verbose 是否输出每个局面的结果
+	 * @return {总节点数, 总用时（纳秒）, 签名}
+	 * @throws ValueOutOfRangeException 深度、线程数或并行模式超出范围
+	 */
+	static long[] run(int depth, int threads, int mode, boolean verbose) throws ValueOutOfRangeException {
+		if (depth < 1 || depth >= AI.MAX_PLY - 1) {
+			throw new ValueOutOfRangeException();
+		}
+		long totalNodes = 0, totalTime = 0, signature = 0xCBF29CE484222325L;
+		for (int i = 0; i < POSITIONS.length; i++) {
+			Board board = new Board();
+			for (int[] move : BatchEvaluator.parseMoves(POSITIONS[i])) {
+				board.setChess(move[0], move[1], true);
+			}
+			AI ai = new AI(board, (short) board.getPlayerTurn(), 1);
+			ai.verbose = false;
+			ai.setRandomSeed(SEED);
+			ai.setThreads(threads);
+			ai.setParallelMode(mode);
+
+			List<int[]> outcome = new ArrayList<>();
+			long start = System.nanoTime();
+			int score = ai.minMaxSearch(depth, outcome);
+			long time = System.nanoTime() - start;
+			ai.setThreads(1);
+			int[] move = outcome.get(0);
+			long nodes = ai.getNodes();
+
+			totalNodes += nodes;
+			totalTime += time;
+			// FNV-1a
+			for (long value : new long[]{nodes, move[0] * 15 + move[1], score}) {
+				signature = (signature ^ value) * 0x100000001B3L;
+			}
+			if (verbose)
+				System.out.printf("Position %d/%d: move = %d,%d, score = %d, nodes = %d, time = %d ms%n",
+								i + 1, POSITIONS.length, move[0], move[1], score, nodes, time / 1000000);
+		}
+		return new long[]{totalNodes, totalTime, signature};
+	}
+}
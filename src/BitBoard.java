@@ -0,0 +1,403 @@
+import java.util.Arrays;
+
+/**
+ * 位棋盘
+ * 用位运算表示棋盘，每个玩家的棋子按四个方向（横、竖、两条对角线）各存一份，
+ * 每一条线占 16 位，四条线打包进一个 long。
+ * 这样连五检测、邻居检测和棋形提取都只需要移位和掩码。
+ * <p>
+ * 线的编号和线内位置：
+ * <pre>
+ *  HORIZONTAL:    线 = row,               位置 = column
+ *  VERTICAL:      线 = column,            位置 = row
+ *  DIAGONAL:      线 = row - column + 14, 位置 = min(row, column)       （左上->右下）
+ *  ANTI_DIAGONAL: 线 = row + column,      位置 = row - max(0, row + column - 14) （右上->左下）
+ * </pre>
+ * 除 HORIZONTAL 外，位置都随着行号增大而增大。
+ * <p>
+ * The bitboard backend of {@link Board}.
+ */
+class BitBoard {
+	/**
+	 * 方向常量：横向
+	 */
+	static final int HORIZONTAL = 0;
+	/**
+	 * 方向常量：纵向
+	 */
+	static final int VERTICAL = 1;
+	/**
+	 * 方向常量：左上->右下
+	 */
+	static final int DIAGONAL = 2;
+	/**
+	 * 方向常量：右上->左下
+	 */
+	static final int ANTI_DIAGONAL = 3;
+	/**
+	 * 每个方向上线的数量
+	 */
+	static final int[] LINE_COUNT = {15, 15, 29, 29};
+	/**
+	 * 每个位置在每个方向上所属的线
+	 * 用法：LINE[direction][row * 15 + column] -> int line
+	 */
+	private static final int[][] LINE = new int[4][225];
+	/**
+	 * 每个位置在所属线上的位置
+	 * 用法：POSITION[direction][row * 15 + column] -> int position
+	 */
+	private static final int[][] POSITION = new int[4][225];
+	/**
+	 * 每条线的长度
+	 * 用法：LENGTH[direction][line] -> int length
+	 */
+	private static final int[][] LENGTH = new int[4][];
+	/**
+	 * 每条线上每个位置对应的棋盘位置（LINE、POSITION 的逆映射）
+	 * 用法：CELL[direction][line * 15 + position] -> int row * 15 + column
+	 */
+	private static final int[][] CELL = new int[4][29 * 15];
+
+	static {
+		for (int direction = 0; direction < 4; direction++) {
+			LENGTH[direction] = new int[LINE_COUNT[direction]];
+		}
+		for (int row = 0; row < 15; row++) {
+			for (int column = 0; column < 15; column++) {
+				int index = row * 15 + column;
+				LINE[HORIZONTAL][index] = row;
+				POSITION[HORIZONTAL][index] = column;
+				LINE[VERTICAL][index] = column;
+				POSITION[VERTICAL][index] = row;
+				LINE[DIAGONAL][index] = row - column + 14;
+				POSITION[DIAGONAL][index] = Math.min(row, column);
+				LINE[ANTI_DIAGONAL][index] = row + column;
+				POSITION[ANTI_DIAGONAL][index] = row - Math.max(0, row + column - 14);
+				for (int direction = 0; direction < 4; direction++) {
+					LENGTH[direction][LINE[direction][index]]++;
+					CELL[direction][LINE[direction][index] * 15 + POSITION[direction][index]] = index;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 位棋盘本身
+	 * 用法：bits[player - BLACK][direction][line >>> 2] 中第 (line & 3) * 16 位开始的 16 位
+	 */
+	private final long[][][] bits = new long[2][4][8];
+
+	/**
+	 * 取出一个 long 中打包的某条线
+	 *
+	 * @param words 打包的线
+	 * @param line  线的编号
+	 * @return 这条线的掩码（低 15 位）
+	 */
+	private static int unpack(long[] words, int line) {
+		return (int) (words[line >>> 2] >>> ((line & 3) << 4)) & 0x7FFF;
+	}
+
+	/**
+	 * 判断一条线上是否有连五
+	 *
+	 * @param mask 线的掩码
+	 * @return 是否有五个连续的位
+	 */
+	static boolean hasFive(int mask) {
+		return (mask & mask >>> 1 & mask >>> 2 & mask >>> 3 & mask >>> 4) != 0;
+	}
+
+	/**
+	 * 在一条线上，找出所有落子后能连五的空位
+	 *
+	 * @param own    己方棋子的掩码
+	 * @param empty  空位的掩码
+	 * @param length 线的长度
+	 * @return 这些空位的掩码
+	 */
+	static int fiveSquares(int own, int empty, int length) {
+		if (Integer.bitCount(own) < 4)
+			return 0;
+		int result = 0;
+		for (int window = 0x1F, end = 1 << length; window < end; window <<= 1) {
+			if (Integer.bitCount(own & window) == 4)
+				result |= empty & window;
+		}
+		return result;
+	}
+
+	/**
+	 * 在一条线上，找出所有落子后能成四（冲四或活四）的空位
+	 *
+	 * @param own    己方棋子的掩码
+	 * @param empty  空位的掩码
+	 * @param length 线的长度
+	 * @return 这些空位的掩码
+	 */
+	static int fourSquares(int own, int empty, int length) {
+		if (Integer.bitCount(own) < 3)
+			return 0;
+		int result = 0;
+		for (int window = 0x1F, end = 1 << length; window < end; window <<= 1) {
+			if (Integer.bitCount(own & window) == 3 && Integer.bitCount(empty & window) == 2)
+				result |= empty & window;
+		}
+		return result;
+	}
+
+	/**
+	 * 在一条线上，找出所有落子后能成活三（再下一步就能成活四）的空位
+	 *
+	 * @param own    己方棋子的掩码
+	 * @param empty  空位的掩码
+	 * @param length 线的长度
+	 * @return 这些空位的掩码
+	 */
+	static int threeSquares(int own, int empty, int length) {
+		if (Integer.bitCount(own) < 2)
+			return 0;
+//		只有在某个没有对方棋子、已有两个己方棋子的五格内的空位才有可能
+		int candidates = 0;
+		for (int window = 0x1F, end = 1 << length; window < end; window <<= 1) {
+			int count = Integer.bitCount(own & window);
+			if (count >= 2 && count + Integer.bitCount(empty & window) == 5)
+				candidates |= empty & window;
+		}
+		int result = 0;
+		for (; candidates != 0; candidates &= candidates - 1) {
+			int bit = candidates & -candidates;
+			if (straightFourSquares(own | bit, empty & ~bit, length) != 0)
+				result |= bit;
+		}
+		return result;
+	}
+
+	/**
+	 * 在一条线上，找出所有落子后能形成活四（至少两个连五点）的空位
+	 *
+	 * @param own    己方棋子的掩码
+	 * @param empty  空位的掩码
+	 * @param length 线的长度
+	 * @return 这些空位的掩码
+	 */
+	static int straightFourSquares(int own, int empty, int length) {
+		if (Integer.bitCount(own) < 3)
+			return 0;
+		int result = 0;
+		for (int rest = empty; rest != 0; rest &= rest - 1) {
+			int bit = rest & -rest;
+			if (Integer.bitCount(fiveSquares(own | bit, empty & ~bit, length)) >= 2)
+				result |= bit;
+		}
+		return result;
+	}
+
+	/**
+	 * 某条线上某位置对应的棋盘位置
+	 *
+	 * @param direction 方向
+	 * @param line      线的编号
+	 * @param position  线内位置
+	 * @return row * 15 + column
+	 */
+	static int cell(int direction, int line, int position) {
+		return CELL[direction][line * 15 + position];
+	}
+
+	/**
+	 * 某位置在某方向上的线编号
+	 *
+	 * @param direction 方向
+	 * @param row       行号
+	 * @param column    列数
+	 * @return 线的编号
+	 */
+	static int line(int direction, int row, int column) {
+		return LINE[direction][row * 15 + column];
+	}
+
+	/**
+	 * 某位置在所属线上的位置
+	 *
+	 * @param direction 方向
+	 * @param row       行号
+	 * @param column    列数
+	 * @return 位置
+	 */
+	static int position(int direction, int row, int column) {
+		return POSITION[direction][row * 15 + column];
+	}
+
+	/**
+	 * 某条线的长度
+	 *
+	 * @param direction 方向
+	 * @param line      线的编号
+	 * @return 长度
+	 */
+	static int length(int direction, int line) {
+		return LENGTH[direction][line];
+	}
+
+	/**
+	 * 复制另一个位棋盘的内容
+	 *
+	 * @param other 要复制的位棋盘
+	 */
+	void copyFrom(BitBoard other) {
+		for (int player = 0; player < 2; player++) {
+			for (int direction = 0; direction < 4; direction++) {
+				System.arraycopy(other.bits[player][direction], 0, bits[player][direction], 0, 8);
+			}
+		}
+	}
+
+	/**
+	 * 清空棋盘
+	 */
+	void clear() {
+		for (long[][] player : bits) {
+			for (long[] direction : player) {
+				Arrays.fill(direction, 0);
+			}
+		}
+	}
+
+	/**
+	 * 设置一个位置
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 * @param player 棋子（BLACK, WHITE, EMPTY）
+	 */
+	void set(int row, int column, short player) {
+		int index = row * 15 + column;
+		for (int direction = 0; direction < 4; direction++) {
+			int line = LINE[direction][index];
+			long bit = 1L << (((line & 3) << 4) + POSITION[direction][index]);
+			bits[0][direction][line >>> 2] &= ~bit;
+			bits[1][direction][line >>> 2] &= ~bit;
+			if (player != Board.EMPTY)
+				bits[player - Board.BLACK][direction][line >>> 2] |= bit;
+		}
+	}
+
+	/**
+	 * 取出某玩家在某条线上的棋子
+	 *
+	 * @param player    玩家（BLACK, WHITE）
+	 * @param direction 方向
+	 * @param line      线的编号
+	 * @return 这条线的掩码，第 i 位表示线上第 i 个位置
+	 */
+	int lineMask(short player, int direction, int line) {
+		return unpack(bits[player - Board.BLACK][direction], line);
+	}
+
+	/**
+	 * 取出某条线上的空位
+	 *
+	 * @param direction 方向
+	 * @param line      线的编号
+	 * @return 空位的掩码
+	 */
+	int emptyMask(int direction, int line) {
+		return ~(unpack(bits[0][direction], line) | unpack(bits[1][direction], line))
+						& ((1 << LENGTH[direction][line]) - 1);
+	}
+
+	/**
+	 * 提取以某点为中心、某方向上的 9 格棋形（不含中心共 8 格）
+	 * 低 8 位：己方棋子；高 8 位：阻挡（对方棋子或棋盘边界）
+	 * 每 8 位中，第 0-3 位依次是偏移 -4 到 -1，第 4-7 位依次是偏移 +1 到 +4，
+	 * 偏移的正方向与线内位置增大的方向相同
+	 *
+	 * @param player    玩家（BLACK, WHITE）
+	 * @param direction 方向
+	 * @param row       行号
+	 * @param column    列数
+	 * @return 棋形编码 (0 - 65535)
+	 */
+	int window(short player, int direction, int row, int column) {
+		int index = row * 15 + column;
+		int line = LINE[direction][index];
+		int position = POSITION[direction][index];
+		int own = unpack(bits[player - Board.BLACK][direction], line);
+		int blocked = unpack(bits[player == Board.BLACK ? 1 : 0][direction], line) | -(1 << LENGTH[direction][line]);
+		// 左侧补 4 个边界，再把中心移到第 4 位
+		own = (own << 4) >>> position;
+		blocked = ((blocked << 4) | 0xF) >>> position;
+		return (own & 0xF) | (own >>> 1 & 0xF0) | (blocked & 0xF) << 8 | (blocked >>> 1 & 0xF0) << 8;
+	}
+
+	/**
+	 * 判断经过某点的四条线上，某玩家是否有连五
+	 *
+	 * @param player 玩家（BLACK, WHITE）
+	 * @param row    行号
+	 * @param column 列数
+	 * @return 是否连五
+	 */
+	boolean hasFive(short player, int row, int column) {
+		int index = row * 15 + column;
+		long[][] own = bits[player - Board.BLACK];
+		for (int direction = 0; direction < 4; direction++) {
+			if (hasFive(unpack(own[direction], LINE[direction][index])))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 判断整个棋盘上某玩家是否有连五
+	 *
+	 * @param player 玩家（BLACK, WHITE）
+	 * @return 是否连五
+	 */
+	boolean hasFive(short player) {
+		long[][] own = bits[player - Board.BLACK];
+		for (int direction = 0; direction < 4; direction++) {
+			for (int line = 0; line < LINE_COUNT[direction]; line++) {
+				if (hasFive(unpack(own[direction], line)))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 计算棋盘上棋子的数量
+	 *
+	 * @return 棋子数量
+	 */
+	int count() {
+		int count = 0;
+		for (int i = 0; i < 4; i++) {
+			count += Long.bitCount(bits[0][HORIZONTAL][i]) + Long.bitCount(bits[1][HORIZONTAL][i]);
+		}
+		return count;
+	}
+
+	/**
+	 * 计算一个矩形区域内棋子的数量
+	 *
+	 * @param fromRow    起始行（包含）
+	 * @param toRow      结束行（不包含）
+	 * @param fromColumn 起始列（包含）
+	 * @param toColumn   结束列（不包含）
+	 * @return 棋子数量
+	 */
+	int count(int fromRow, int toRow, int fromColumn, int toColumn) {
+		if (toColumn <= fromColumn)
+			return 0;
+		int mask = ((1 << (toColumn - fromColumn)) - 1) << fromColumn;
+		int count = 0;
+		for (int row = fromRow; row < toRow; row++) {
+			count += Integer.bitCount(
+							(unpack(bits[0][HORIZONTAL], row) | unpack(bits[1][HORIZONTAL], row)) & mask);
+		}
+		return count;
+	}
+}
@@ -65,20 +65,48 @@ public class Board {
 					"1-", 1
 	);
 	/**
-	 * 棋盘得分缓存,用于加速计算棋盘估分
-	 * 每一次计算棋盘的得分都会缓存在此，棋盘以哈希码表示
-	 * 键是棋盘的哈希码；
-	 * 值是一个Score类，其中储存单点的分和双方总分
-	 * 用法：boardScoreCache.get(int boardHashCode) -> Score object
-	 * <p>
-	 * Cache of scores of different boards
-	 * Each time the score of the board is cached here (when newly calculated)
-	 * The board is represented by its hash code
-	 * Key: Hashcode of board
-	 * Value: A score object storing the pointScoreCache and total score of both players
-	 * Usage: boardScoreCache.get(int boardHashCode) -> Score object
+	 * Zobrist 随机数表，每个位置、每种棋子各对应一个 64 位随机数
+	 * 用固定种子生成，保证每次运行（以及不同的棋盘实例之间）键值一致
+	 * 用法：ZOBRIST[player - BLACK][row * 15 + column] -> long
+	 */
+	private static final long[][] ZOBRIST = new long[2][225];
+
+	static {
+		Random random = new Random(0x5EED_600DL);
+		for (long[] table : ZOBRIST) {
+			for (int i = 0; i < table.length; i++) {
+				table[i] = random.nextLong();
+			}
+		}
+	}
+	/**
+	 * 棋形得分表，由 scorePoint 的扫描规则预先计算
+	 * 下标是 BitBoard.window 返回的 9 格棋形编码，值是这个棋形的得分；
+	 * 若扫描需要读到窗口以外的位置才能确定得分，则值为 FALLBACK，此时退回 scorePoint 计算
+	 * 纵向的扫描规则与其它三个方向略有不同，所以单独一张表
+	 * 用法：PATTERN_SCORE[direction == 2 ? 1 : 0][window] -> int score
 	 */
-	Map<Integer, Score> boardScoreCache = new HashMap<>();
+	private static final int[][] PATTERN_SCORE = new int[2][1 << 16];
+	/**
+	 * 常量：棋形得分表中表示需要退回 scorePoint 的值
+	 */
+	private static final int FALLBACK = -1;
+	/**
+	 * 常量：棋形窗口中表示窗口以外（未知）的格子
+	 */
+	private static final int OUTSIDE = -2;
+
+	static {
+		for (int own = 0; own < 256; own++) {
+			for (int blocked = 0; blocked < 256; blocked++) {
+				if ((own & blocked) != 0)
+					continue;
+				PATTERN_SCORE[0][own | blocked << 8] = scoreWindow(own, blocked, true);
+				PATTERN_SCORE[1][own | blocked << 8] = scoreWindow(own, blocked, false);
+			}
+		}
+	}
+
 	/**
 	 * 单点得分缓存，用于加速单点评分
 	 * 当附近的位置发生变动时（新下棋，悔棋），会有函数更新其中的得分
@@ -86,19 +114,43 @@ public class Board {
 	 * 水平：1
 	 * 竖直：2
 	 * 两个对角：3,4
-	 * 用法：pointScoreCache.get(short player)[int direction][int row][int column] -> int score
+	 * 所有分数平铺在一个数组中，同一位置的四个方向相邻存放
+	 * 用法：pointScoreCache[pointIndex(short player, int row, int column) + direction - 1] -> int score
+	 * 读取请使用 pointScore 和 pointScoreSum
+	 */
+	private final int[] pointScoreCache = new int[2 * 225 * 4];
+	/**
+	 * 单点四个方向得分之和，与 pointScoreCache 同步更新
+	 * 用法：pointScoreSum[(player - BLACK) * 225 + row * 15 + column] -> int score
+	 */
+	private final int[] pointScoreSum = new int[2 * 225];
+	/**
+	 * 双方的棋形总分：该方所有棋子的 pointScoreSum 之和
+	 * 单点得分或棋子变化时按差值增量更新，scoreBoard 直接读取
+	 * 用法：totalScore[player - BLACK] -> int score
 	 */
-	Map<Short, int[][][]> pointScoreCache = Map.of(BLACK, new int[5][15][15],
-					WHITE, new int[5][15][15]);
+	private final int[] totalScore = new int[2];
 	/**
 	 * 当前棋盘上棋子总数
 	 */
 	int chessCount = 0;
 	/**
 	 * 主要棋盘
-	 * 注意：所有的下棋操作必须由setChess方法完成，否则不会更新单点分数缓存
+	 * 注意：所有的下棋操作必须由setChess（或搜索时的makeMove）方法完成，否则不会更新单点分数缓存
 	 */
 	private short[][] board;
+	/**
+	 * 位棋盘，与 board 保持同步，用于连五、邻居等需要扫描的判断
+	 */
+	private final BitBoard bitBoard = new BitBoard();
+	/**
+	 * 周围 1 格内至少有 1 个棋子的空位，开局时的候选点
+	 */
+	private final NeighborSet nearOne = new NeighborSet(1, 1);
+	/**
+	 * 周围 2 格内至少有 2 个棋子的空位，开局以后的候选点
+	 */
+	private final NeighborSet nearTwo = new NeighborSet(2, 2);
 	/**
 	 * 记录下棋步骤，用于悔棋
 	 */
@@ -107,6 +159,39 @@ public class Board {
 	 * 记录当前下棋玩家，默认黑棋开始
 	 */
 	private short playerTurn = BLACK;
+	/**
+	 * 当前棋盘的 Zobrist 键，在每次落子/悔棋时以 O(1) 增量更新
+	 * 注意：只包含棋子信息，不包含当前玩家
+	 */
+	private long zobristKey = 0;
+	/**
+	 * 当前棋盘上空位的数量，在每次落子/悔棋时增量更新
+	 */
+	private int emptyCount = 225;
+	/**
+	 * 当前的胜者（BLACK, WHITE），没有胜者时为 CONTINUE
+	 * 在每次落子/悔棋时只检查经过该点的四条线
+	 */
+	private int winner = CONTINUE;
+	/**
+	 * frames 中每一步所占的 int 数量
+	 */
+	private static final int FRAME_SIZE = 5;
+	/**
+	 * 悔棋日志：每次 makeMove 改变的单点得分，(下标, 旧值) 成对存放，unmakeMove 时倒序恢复
+	 */
+	private int[] journal = new int[1024];
+	private int journalSize = 0;
+	/**
+	 * 每一步 makeMove 的记录：日志起始位置、落子位置（row * 15 + column）、落子前的胜者、落子前双方的总分
+	 * 用法：frames[i * FRAME_SIZE + 0..4]
+	 */
+	private final int[] frames = new int[225 * FRAME_SIZE];
+	private int frameCount = 0;
+	/**
+	 * 是否正在记录悔棋日志（只在 makeMove 更新分数时为 true）
+	 */
+	private boolean journaling = false;
 
 	/**
 	 * 默认构造器
@@ -122,31 +207,33 @@ public class Board {
 	 * @param playerTurn 当前玩家
 	 */
 	public Board(short[][] data, short playerTurn) {
-		// 传入参数格式
-		if (data.length != 15 || data[0].length != 15) {
-			System.out.println("Illegal board size");
-			throw new ArrayIndexOutOfBoundsException();
-		}
-		for (short[] i : data) {
-			for (int j : i) {
-				if (j != EMPTY && j != BLACK && j != WHITE) {
-					throw new ValueOutOfRangeException();
-				}
-			}
-		}
-
-		this.board = data.clone();
-		if (playerTurn != WHITE && playerTurn != BLACK) {
-			throw new ValueOutOfRangeException();
-		}
-		this.playerTurn = playerTurn;
+		load(data, playerTurn);
+	}
 
-		// 更新棋盘上所有点的分数
+	/**
+	 * 复制构造器
+	 * 复制棋盘、所有缓存和增量维护的状态，得到一个可以独立修改的棋盘（例如给另一个线程搜索）
+	 * 注意：悔棋日志不复制，新棋盘不能 unmakeMove 复制之前的着法
+	 *
+	 * @param other 要复制的棋盘
+	 */
+	public Board(Board other) {
+		this.board = new short[15][];
 		for (int i = 0; i < 15; i++) {
-			for (int j = 0; j < 15; j++) {
-				updateScore(i, j);
-			}
+			this.board[i] = other.board[i].clone();
 		}
+		System.arraycopy(other.pointScoreCache, 0, pointScoreCache, 0, pointScoreCache.length);
+		System.arraycopy(other.pointScoreSum, 0, pointScoreSum, 0, pointScoreSum.length);
+		System.arraycopy(other.totalScore, 0, totalScore, 0, totalScore.length);
+		bitBoard.copyFrom(other.bitBoard);
+		nearOne.copyFrom(other.nearOne);
+		nearTwo.copyFrom(other.nearTwo);
+		this.operations = new ArrayList<>(other.operations);
+		this.chessCount = other.chessCount;
+		this.playerTurn = other.playerTurn;
+		this.zobristKey = other.zobristKey;
+		this.emptyCount = other.emptyCount;
+		this.winner = other.winner;
 	}
 
 	/**
@@ -185,6 +272,61 @@ public class Board {
 		return board;
 	}
 
+	/**
+	 * Gets zobrist key.
+	 *
+	 * @return 当前棋盘的 64 位 Zobrist 键
+	 */
+	public long getZobristKey() {
+		return zobristKey;
+	}
+
+	/**
+	 * 某一位置上某种棋子对应的 Zobrist 随机数
+	 *
+	 * @param row    行数
+	 * @param column 列数
+	 * @param player 棋子（BLACK, WHITE, EMPTY）
+	 * @return 随机数，空位为 0
+	 */
+	static long zobrist(int row, int column, short player) {
+		return player == EMPTY ? 0 : ZOBRIST[player - BLACK][row * 15 + column];
+	}
+
+	/**
+	 * Zobrist 随机数表的指纹，随机数表变了以后保存的键（置换表文件、开局库）就没有意义了
+	 *
+	 * @return 指纹
+	 */
+	static long zobristFingerprint() {
+		long fingerprint = 0;
+		for (short player = BLACK; player <= WHITE; player++) {
+			for (int cell = 0; cell < 225; cell++) {
+				fingerprint = fingerprint * 31 + zobrist(cell / 15, cell % 15, player);
+			}
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * 估分规则的指纹，由 STANDARDS 的分数和棋形得分表计算
+	 * 估分规则变了以后，以前保存的分数（例如置换表文件）就没有意义了
+	 *
+	 * @return 指纹
+	 */
+	static long evaluationFingerprint() {
+		long fingerprint = 0;
+		for (String type : new String[]{"5+", "4+", "3+", "2+", "1+", "4-", "3-", "2-", "1-"}) {
+			fingerprint = fingerprint * 31 + STANDARDS.get(type);
+		}
+		for (int[] table : PATTERN_SCORE) {
+			for (int score : table) {
+				fingerprint = fingerprint * 31 + score;
+			}
+		}
+		return fingerprint;
+	}
+
 	/**
 	 * 下棋，不记录当前操作
 	 * 这个方法多是在ai计算和调试时用，真正下棋需要用另一个setChess方法
@@ -202,7 +344,7 @@ public class Board {
 			throw new ValueOutOfRangeException();
 		}
 		chessCount += (player == EMPTY) ? -1 : 1;
-		board[row][column] = player;
+		setCell(row, column, player);
 		updateScore(row, column);
 	}
 
@@ -224,7 +366,7 @@ public class Board {
 		}
 
 		chessCount++;
-		board[row][column] = playerTurn;
+		setCell(row, column, playerTurn);
 		updateScore(row, column);
 
 		// 记录操作
@@ -235,20 +377,120 @@ public class Board {
 	}
 
 	/**
-	 * 从单点开始更新分数 由于一个点棋子的变化会同时影响到周围的多个点的分数，所以也要同时计算这些点
+	 * 搜索时落子，同时记录悔棋日志，必须与 unmakeMove 成对使用
+	 * 两者之间可以嵌套其他的 makeMove/unmakeMove，但不能用 setChess 修改棋盘
+	 * 不记录操作，也不转换玩家
 	 *
-	 * @param row    行号
+	 * @param row    行数
 	 * @param column 列数
+	 * @param player 下棋玩家（BLACK, WHITE）
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 * @throws RedundantChessException  该位置已有棋子
 	 */
-	public void updateScore(int row, int column) {
-		// Timer.startRecord("Update");
+	public void makeMove(int row, int column, short player) throws ValueOutOfRangeException, RedundantChessException {
+		if (row >= 15 || column >= 15 || row < 0 || column < 0 || player != BLACK && player != WHITE) {
+			throw new ValueOutOfRangeException();
+		}
+		if (board[row][column] != EMPTY) {
+			throw new RedundantChessException();
+		}
+		int frame = frameCount++ * FRAME_SIZE;
+		frames[frame] = journalSize;
+		frames[frame + 1] = row * 15 + column;
+		frames[frame + 2] = winner;
+		frames[frame + 3] = totalScore[0];
+		frames[frame + 4] = totalScore[1];
+
+		chessCount++;
+		setCell(row, column, player);
+		journaling = true;
+		updateScore(row, column);
+		journaling = false;
+	}
+
+	/**
+	 * 撤销上一次 makeMove
+	 * 单点得分按日志倒序恢复，不重新计算
+	 *
+	 * @throws ArrayIndexOutOfBoundsException 没有可以撤销的着法
+	 */
+	public void unmakeMove() throws ArrayIndexOutOfBoundsException {
+		if (frameCount == 0) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int frame = --frameCount * FRAME_SIZE;
+		int start = frames[frame], cell = frames[frame + 1];
+		for (int i = journalSize - 2; i >= start; i -= 2) {
+			int index = journal[i], score = journal[i + 1];
+			pointScoreSum[index >>> 2] += score - pointScoreCache[index];
+			pointScoreCache[index] = score;
+		}
+		journalSize = start;
+
+		chessCount--;
+		// 胜负直接恢复为落子前的状态，不需要 setCell 重新判断
+		winner = CONTINUE;
+		setCell(cell / 15, cell % 15, EMPTY);
+		winner = frames[frame + 2];
+		// 总分同样直接恢复
+		totalScore[0] = frames[frame + 3];
+		totalScore[1] = frames[frame + 4];
+	}
 
-//		如果当前棋盘已经在缓存中，则直接将 pointScoreCache 更改为缓存中的值
-		if (boardScoreCache.containsKey(Arrays.hashCode(board))) {
-			pointScoreCache = boardScoreCache.get(Arrays.hashCode(board)).pointScoreCache;
+	/**
+	 * 改变一个位置上的棋子，同时增量更新 Zobrist 键、位棋盘、空位数量、胜负状态和双方总分
+	 * 注意：不更新单点分数缓存，总分按该点现有的单点得分计入，之后 updateScore 再按差值修正
+	 *
+	 * @param row    行数
+	 * @param column 列数
+	 * @param player 新的棋子（BLACK, WHITE, EMPTY）
+	 */
+	private void setCell(int row, int column, short player) {
+		short old = board[row][column];
+		if (old == player)
 			return;
+		// 若被移走的棋子属于胜者并且在连五上，则胜负需要重新判断
+		boolean lostFive = old == winner && bitBoard.hasFive(old, row, column);
+
+		zobristKey ^= zobrist(row, column, old) ^ zobrist(row, column, player);
+		if (old != EMPTY)
+			totalScore[old - BLACK] -= pointScoreSum(old, row, column);
+		if (player != EMPTY)
+			totalScore[player - BLACK] += pointScoreSum(player, row, column);
+		board[row][column] = player;
+		bitBoard.set(row, column, player);
+		emptyCount += (old == EMPTY ? 0 : 1) - (player == EMPTY ? 0 : 1);
+		if (old == EMPTY) {
+			nearOne.place(row, column);
+			nearTwo.place(row, column);
+		} else if (player == EMPTY) {
+			nearOne.take(row, column);
+			nearTwo.take(row, column);
 		}
 
+		if (lostFive)
+			findWinner();
+		if (winner == CONTINUE && player != EMPTY && isEnd(row, column) == player)
+			winner = player;
+	}
+
+	/**
+	 * 扫描整个棋盘重新确定胜者
+	 * 只在构造棋盘或者移走连五中的棋子时调用
+	 */
+	private void findWinner() {
+		winner = bitBoard.hasFive(BLACK) ? BLACK : bitBoard.hasFive(WHITE) ? WHITE : CONTINUE;
+	}
+
+	/**
+	 * 从单点开始更新分数 由于一个点棋子的变化会同时影响到周围的多个点的分数，所以也要同时计算这些点
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 */
+	public void updateScore(int row, int column) {
+		long timer = Timer.start();
+
 		// 更新分数的范围
 		final int range = 6;
 		// 横向查找
@@ -283,7 +525,7 @@ public class Board {
 			// 同上，只记录斜向
 			update(x, y, 4);
 		}
-		// Timer.endRecord("Update");
+		Timer.end(Timer.UPDATE_SCORE, timer);
 	}
 
 	/**
@@ -293,77 +535,104 @@ public class Board {
 	 * @param column    列数
 	 * @param direction 更新分数的方向（1, 2, 3, 4 分别是横纵斜线）
 	 */
-	@SuppressWarnings("Duplicates")
 	private void update(int row, int column, int direction) {
 		int player = board[row][column];
-		// 新下黑子或变为空位都需要计算黑棋
-		if (player == EMPTY || player == BLACK) {
-			int score = scorePoint(row, column, BLACK, direction);
-			// 保存到缓存中
-			pointScoreCache.get(BLACK)[direction][row][column] = score;
-		} else
-			pointScoreCache.get(BLACK)[direction][row][column] = 0; /* 若为白棋黑棋分数清零 */
-		// 新下白子或变为空位都需要计算白子
-		if (player == EMPTY || player == WHITE) {
-			int score = scorePoint(row, column, WHITE, direction);
-			// 缓存
-			pointScoreCache.get(WHITE)[direction][row][column] = score;
-		} else
-			pointScoreCache.get(WHITE)[direction][row][column] = 0; /* 若为黑棋白棋分数清零 */
+		// 新下黑子或变为空位都需要计算黑棋，若为白棋黑棋分数清零
+		int score = (player == EMPTY || player == BLACK) ? patternScore(row, column, BLACK, direction) : 0;
+		// 保存到缓存中
+		setPointScore(BLACK, row, column, direction, score);
+		// 新下白子或变为空位都需要计算白子，若为黑棋白棋分数清零
+		score = (player == EMPTY || player == WHITE) ? patternScore(row, column, WHITE, direction) : 0;
+		setPointScore(WHITE, row, column, direction, score);
 	}
 
 	/**
-	 * 给整个棋盘打分（包装函数）
+	 * 单点得分缓存中某一位置的起始下标
 	 *
-	 * @param player 要打分的棋子
-	 * @param weight 打分权重（权重越大，算分越偏向于防守） 默认情况是建议 weight = 1
-	 * @return 整个棋盘的分数 int
+	 * @param player 棋子（BLACK, WHITE）
+	 * @param row    行号
+	 * @param column 列数
+	 * @return 下标，四个方向依次存放在其后
 	 */
-	public int scoreBoard(short player, double weight) {
-		// Timer.startRecord("scoreBoard");
+	private static int pointIndex(short player, int row, int column) {
+		return ((player - BLACK) * 225 + row * 15 + column) << 2;
+	}
 
-		// 计算当前棋盘的哈希码
-		int hashCode = Arrays.deepHashCode(board);
-		// 若缓存中有当前棋盘则直接返回分数
-		Score b = boardScoreCache.get(hashCode);
-		if (b != null && b.getScore(player) != -1)
-			return b.getScore(player);
-		int result = _scoreBoard(player, weight);
-		// 将结果添加到缓存
-		if (b == null) {
-			b = new Score(new HashMap<>(pointScoreCache));
-			boardScoreCache.put(hashCode, b);
+	/**
+	 * 写入单点单方向的得分，同时更新该点的得分之和，若该点是该方的棋子还要更新该方的总分
+	 *
+	 * @param player    棋子（BLACK, WHITE）
+	 * @param row       行号
+	 * @param column    列数
+	 * @param direction 方向（1 - 4）
+	 * @param score     得分
+	 */
+	private void setPointScore(short player, int row, int column, int direction, int score) {
+		int index = pointIndex(player, row, column) + direction - 1;
+		if (journaling && pointScoreCache[index] != score) {
+			if (journalSize + 2 > journal.length)
+				journal = Arrays.copyOf(journal, journal.length * 2);
+			journal[journalSize++] = index;
+			journal[journalSize++] = pointScoreCache[index];
 		}
-		b.setScore(player, result);
+		pointScoreSum[index >>> 2] += score - pointScoreCache[index];
+		if (board[row][column] == player)
+			totalScore[player - BLACK] += score - pointScoreCache[index];
+		pointScoreCache[index] = score;
+	}
+
+	/**
+	 * 读取单点单方向的缓存得分
+	 *
+	 * @param player    棋子（BLACK, WHITE）
+	 * @param row       行号
+	 * @param column    列数
+	 * @param direction 方向（1 - 4）
+	 * @return 得分
+	 */
+	public int pointScore(short player, int row, int column, int direction) {
+		return pointScoreCache[pointIndex(player, row, column) + direction - 1];
+	}
 
-		// Timer.endRecord("scoreBoard");
-		return result;
+	/**
+	 * 读取单点四个方向缓存得分之和
+	 *
+	 * @param player 棋子（BLACK, WHITE）
+	 * @param row    行号
+	 * @param column 列数
+	 * @return 得分之和
+	 */
+	public int pointScoreSum(short player, int row, int column) {
+		return pointScoreSum[(player - BLACK) * 225 + row * 15 + column];
+	}
+
+	/**
+	 * 单点单方向评分（查表）
+	 * 结果与 scorePoint 完全一致，只有查表无法确定时才退回 scorePoint
+	 *
+	 * @param row       行号
+	 * @param column    列数
+	 * @param player    要评分的棋子
+	 * @param direction 评分方向（1为横向、2为竖直、3为左上->右下、4为右上->左下）
+	 * @return 单点得分 int
+	 */
+	int patternScore(int row, int column, short player, int direction) {
+		int score = PATTERN_SCORE[direction == 2 ? 1 : 0][bitBoard.window(player, direction - 1, row, column)];
+		return score != FALLBACK ? score : scorePoint(row, column, player, direction);
 	}
 
 	/**
-	 * 计算整个棋盘的分数（真正计算）
+	 * 给整个棋盘打分
+	 * 双方总分是增量维护的，所以是 O(1) 的
 	 *
 	 * @param player 要打分的棋子
-	 * @param weight 权重，同上
-	 * @return 棋盘分数
+	 * @param weight 打分权重（权重越大，算分越偏向于防守） 默认情况是建议 weight = 1
+	 * @return 整个棋盘的分数 int
 	 */
-	private int _scoreBoard(short player, double weight) {
-		int selfScore = 0, enemyScore = 0;
-		// 分别计算每个点的分数
-		for (int i = 0; i < 15; i++) {
-			for (int j = 0; j < 15; j++) {
-				if (board[i][j] == player)
-					// 注意：一共有四个方向，所以一个点的分数不同方向都要加
-					for (int direction = 1; direction < 5; direction++)
-						// 直接从单点分数缓存中取值
-						selfScore += pointScoreCache.get(player)[direction][i][j];
-				else if (board[i][j] != EMPTY)
-					for (int direction = 1; direction < 5; direction++)
-						// 直接从单点分数缓存中取值
-						enemyScore += pointScoreCache.get(player == WHITE ? BLACK : WHITE)[direction][i][j];
-			}
-		}
-		return (int) (selfScore - weight * enemyScore);
+	public int scoreBoard(short player, double weight) {
+		// 双方总分增量维护，不需要遍历棋盘
+		int black = totalScore[0], white = totalScore[1];
+		return player == BLACK ? (int) (black - weight * white) : (int) (white - weight * black);
 	}
 
 	/**
@@ -377,7 +646,7 @@ public class Board {
 	 */
 	@SuppressWarnings("Duplicates")
 	public int scorePoint(int row, int column, short player, int... direction) {
-		// Timer.startRecord("scorePoint");
+		long timer = Timer.start();
 		int emptyPosition, count, block;
 		int score = 0;
 		boolean horizontal = false, vertical = false, diagonal1 = false, diagonal2 = false;
@@ -598,10 +867,84 @@ public class Board {
 			score += calculateScore(emptyPosition, count, block);
 		}
 
-		// Timer.endRecord("scorePoint");
+		Timer.end(Timer.SCORE_POINT, timer);
 		return score;
 	}
 
+	/**
+	 * 按照 scorePoint 的扫描规则计算一个 9 格棋形的得分（建表用）
+	 *
+	 * @param own             己方棋子，编码同 BitBoard.window
+	 * @param blocked         阻挡，编码同 BitBoard.window
+	 * @param shiftBackward   反方向扫描时是否移动空位位置（纵向扫描不移动）
+	 * @return 得分，或 FALLBACK
+	 */
+	private static int scoreWindow(int own, int blocked, boolean shiftBackward) {
+		int emptyPosition = -1, count = 1, block = 0;
+		// 正方向
+		for (int i = 1; true; i++) {
+			int chess = windowCell(own, blocked, i);
+			if (chess == OUTSIDE)
+				return FALLBACK;
+			if (chess == EMPTY) {
+				if (emptyPosition != -1)
+					break;
+				int next = windowCell(own, blocked, i + 1);
+				if (next == OUTSIDE)
+					return FALLBACK;
+				if (next == BLACK)
+					emptyPosition = count;
+				else
+					break;
+			} else if (chess == BLACK)
+				count++;
+			else {
+				block++;
+				break;
+			}
+		}
+		// 反方向
+		for (int i = -1; true; i--) {
+			int chess = windowCell(own, blocked, i);
+			if (chess == OUTSIDE)
+				return FALLBACK;
+			if (chess == EMPTY) {
+				if (emptyPosition != -1)
+					break;
+				int next = windowCell(own, blocked, i - 1);
+				if (next == OUTSIDE)
+					return FALLBACK;
+				if (next == BLACK)
+					emptyPosition = 0;
+				else
+					break;
+			} else if (chess == BLACK) {
+				count++;
+				if (shiftBackward)
+					emptyPosition += (emptyPosition == -1) ? 0 : 1;
+			} else {
+				block++;
+				break;
+			}
+		}
+		return calculateScore(emptyPosition, count, block);
+	}
+
+	/**
+	 * 读取 9 格棋形中的一格（建表用）
+	 *
+	 * @param own     己方棋子
+	 * @param blocked 阻挡
+	 * @param offset  相对中心的偏移
+	 * @return BLACK 表示己方，WHITE 表示阻挡，EMPTY 表示空位，OUTSIDE 表示窗口以外
+	 */
+	private static int windowCell(int own, int blocked, int offset) {
+		if (offset < -4 || offset > 4)
+			return OUTSIDE;
+		int bit = 1 << (offset < 0 ? offset + 4 : offset + 3);
+		return (own & bit) != 0 ? BLACK : (blocked & bit) != 0 ? WHITE : EMPTY;
+	}
+
 	/**
 	 * 根据棋形（位置信息）计算具体得分
 	 *
@@ -611,7 +954,7 @@ public class Board {
 	 * @return 具体分数
 	 */
 	@SuppressWarnings("Duplicates")
-	private int calculateScore(int emptyPosition, int count, int block) {
+	private static int calculateScore(int emptyPosition, int count, int block) {
 		int five = Board.STANDARDS.get("5+"), four = Board.STANDARDS.get("4+"), three = Board.STANDARDS.get("3+"),
 						two = Board.STANDARDS.get("2+"), one = Board.STANDARDS.get("1+"), blockFour = Board.STANDARDS.get("4-"),
 						blockThree = Board.STANDARDS.get("3-"), blockTwo = Board.STANDARDS.get("2-"),
@@ -772,6 +1115,51 @@ public class Board {
 		return 0;
 	}
 
+	/**
+	 * 载入一个局面，代替现有的棋盘（复用所有缓存数组，不重新分配）
+	 * 操作记录和悔棋日志都会清空
+	 *
+	 * @param data       棋盘（必须是二维数组形式），不会被修改，之后修改它也不影响本棋盘
+	 * @param playerTurn 当前玩家
+	 * @throws ArrayIndexOutOfBoundsException 棋盘大小不是 15 * 15
+	 * @throws ValueOutOfRangeException       棋子或玩家不合法
+	 */
+	public void load(short[][] data, short playerTurn) throws ArrayIndexOutOfBoundsException, ValueOutOfRangeException {
+		// 传入参数格式
+		if (data.length != 15 || data[0].length != 15) {
+			System.out.println("Illegal board size");
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		for (short[] i : data) {
+			for (int j : i) {
+				if (j != EMPTY && j != BLACK && j != WHITE) {
+					throw new ValueOutOfRangeException();
+				}
+			}
+		}
+		if (playerTurn != WHITE && playerTurn != BLACK) {
+			throw new ValueOutOfRangeException();
+		}
+
+		reset();
+		this.playerTurn = playerTurn;
+		// 逐个放置棋子，Zobrist 键、位棋盘、空位数量和胜负状态由 setCell 增量计算
+		for (int i = 0; i < 15; i++) {
+			for (int j = 0; j < 15; j++) {
+				if (data[i][j] != EMPTY)
+					setCell(i, j, data[i][j]);
+			}
+		}
+		chessCount = 225 - emptyCount;
+
+		// 更新棋盘上所有点的分数
+		for (int i = 0; i < 15; i++) {
+			for (int j = 0; j < 15; j++) {
+				updateScore(i, j);
+			}
+		}
+	}
+
 	/**
 	 * 悔一步棋
 	 *
@@ -786,7 +1174,7 @@ public class Board {
 		list.add(last[0]);
 		list.add(last[1]);
 		list.add((int) board[last[0]][last[1]]);
-		board[last[0]][last[1]] = EMPTY;
+		setCell(last[0], last[1], EMPTY);
 		updateScore(last[0], last[1]);
 		return list;
 	}
@@ -795,13 +1183,25 @@ public class Board {
 	 * 重设棋盘
 	 */
 	public void reset() {
-		board = new short[15][15];
-		for (int i = 0; i < 15; i++) {
-			for (int j = 0; j < 15; j++) {
-				board[i][j] = EMPTY;
-			}
+		if (board == null)
+			board = new short[15][15];
+		for (short[] row : board) {
+			Arrays.fill(row, EMPTY);
 		}
 		playerTurn = BLACK;
+		chessCount = 0;
+		zobristKey = 0;
+		emptyCount = 225;
+		winner = CONTINUE;
+		bitBoard.clear();
+		nearOne.clear();
+		nearTwo.clear();
+		Arrays.fill(pointScoreCache, 0);
+		Arrays.fill(pointScoreSum, 0);
+		Arrays.fill(totalScore, 0);
+		operations.clear();
+		journalSize = 0;
+		frameCount = 0;
 	}
 
 	/**
@@ -810,125 +1210,68 @@ public class Board {
 	 * @return 棋子数量 int
 	 */
 	public int count() {
-		int num = 0;
-		for (int i = 0; i < 15; i++) {
-			for (int j = 0; j < 15; j++) {
-				if (board[i][j] != EMPTY)
-					num++;
-			}
-		}
-		return chessCount = num;
+		return chessCount = 225 - emptyCount;
+	}
+
+	/**
+	 * 判断一个点是否有邻居
+	 *
+	 * @param row          行号
+	 * @param column       列数
+	 * @param neighborDist 最大检测邻居的范围
+	 * @param count        至少满足有几个邻居
+	 * @return 是否有邻居
+	 */
+	public boolean hasNeighbor(int row, int column, int neighborDist, int count) {
+		return bitBoard.count(
+						Math.max(row - neighborDist, 0), Math.min(row + neighborDist, 14) + 1,
+						Math.max(column - neighborDist, 0), Math.min(column + neighborDist, 14) + 1
+		) >= count;
+	}
+
+	/**
+	 * 位棋盘，供需要直接做位运算的搜索使用，调用方不能修改
+	 *
+	 * @return 位棋盘
+	 */
+	BitBoard bitBoard() {
+		return bitBoard;
+	}
+
+	/**
+	 * 当前的候选点集合
+	 * 棋子少于 6 个时为周围 1 格内至少有 1 个棋子的空位，
+	 * 否则为周围 2 格内至少有 2 个棋子的空位
+	 * 集合随落子/悔棋增量更新，调用方不能修改
+	 *
+	 * @return 候选点集合
+	 */
+	NeighborSet candidates() {
+		return count() < 6 ? nearOne : nearTwo;
 	}
 
 	/**
 	 * 判断游戏是否结束
+	 * 胜负状态在每次落子/悔棋时已经增量更新，这里直接返回
 	 *
 	 * @return 整数状态码 (BLACK, WHITE, TIE, CONTINUE)
 	 */
 	public int isEnd() {
-		// Timer.startRecord("isEnd");
-		boolean jump = false;
-		for (short[] line : board) {
-			for (int i : line) {
-				if (i == EMPTY) {
-					jump = true;
-					break;
-				}
-			}
-		}
-		if (!jump) {
-			// Timer.endRecord("isEnd");
-			return TIE;
-		}
-		for (short[] line : splitBoard()) {
-			int current = 0;
-			int count = 0;
-			for (int i : line) {
-				if (i != current) {
-					count = 1;
-					current = i;
-				} else {
-					if (i == EMPTY)
-						continue;
-					if (++count == 5) {
-						// Timer.endRecord("isEnd");
-						return current;
-					}
-				}
-			}
-		}
-		// Timer.endRecord("isEnd");
-		return CONTINUE;
+		return emptyCount == 0 ? TIE : winner;
 	}
 
 	/**
 	 * 判断游戏是否结束 这个重载方法只是判断某一个点的输赢
+	 * 检查经过该点的四条线上该点的棋子是否连五
 	 *
 	 * @param row    行数
 	 * @param column 列数
 	 * @return 整数状态码 (WHITE, BLACK, CONTINUE)
 	 */
-	@SuppressWarnings("Duplicates")
 	public int isEnd(int row, int column) {
-		int startRow, startColumn, endRow, endColumn, count;
-		int player = board[row][column];
-		// Horizontal
-		count = 0;
-		startColumn = column - 4 >= 0 ? column - 4 : 0;
-		endColumn = column + 4 <= 14 ? column + 4 : 14;
-		for (int i = startColumn; i <= endColumn; i++) {
-			if (board[row][i] == player) {
-				count++;
-			} else {
-				count = 0;
-			}
-			if (count == 5) {
-				return player;
-			}
-		}
-		// Vertical
-		count = 0;
-		startRow = row - 4 >= 0 ? row - 4 : 0;
-		endRow = row + 4 <= 14 ? row + 4 : 14;
-		for (int i = startRow; i <= endRow; i++) {
-			if (board[i][column] == player) {
-				count++;
-			} else {
-				count = 0;
-			}
-			if (count == 5) {
-				return player;
-			}
-		}
-		// Diagonal 1
-		int currentRow, currentColumn;
-		count = 0;
-		for (int i = 0; i < Math.min(endRow - startRow, endColumn - startColumn); i++) {
-			currentRow = startRow + i;
-			currentColumn = startColumn + i;
-			if (board[currentRow][currentColumn] == player) {
-				count++;
-			} else {
-				count = 0;
-			}
-			if (count == 5) {
-				return player;
-			}
-		}
-		// Diagonal 2
-		count = 0;
-		for (int i = 0; i < Math.min(endRow - startRow, endColumn - startColumn); i++) {
-			currentRow = endRow - i;
-			currentColumn = startColumn + i;
-			if (board[currentRow][currentColumn] == player) {
-				count++;
-			} else {
-				count = 0;
-			}
-			if (count == 5) {
-				return player;
-			}
-		}
+		short player = board[row][column];
+		if (player != EMPTY && bitBoard.hasFive(player, row, column))
+			return player;
 		return CONTINUE;
 	}
 
@@ -984,47 +1327,4 @@ public class Board {
 		}
 		return String.valueOf(str);
 	}
-
-	/**
-	 * Score 类
-	 * 储存一个棋盘的相关分数
-	 */
-	class Score {
-		/**
-		 * 当前棋盘的 pointScoreCache，直接是原来的 clone
-		 */
-		Map<Short, int[][][]> pointScoreCache;
-		private int blackScore, whiteScore;
-
-		/**
-		 * Instantiates a new Score.
-		 *
-		 * @param pointScoreCache the point score cache
-		 */
-		Score(Map<Short, int[][][]> pointScoreCache) {
-			this.blackScore = this.whiteScore = -1;
-			this.pointScoreCache = pointScoreCache;
-		}
-
-		/**
-		 * Gets score.
-		 *
-		 * @param player the player number
-		 * @return the score
-		 */
-		int getScore(short player) {
-			return (player == BLACK) ? blackScore : whiteScore;
-		}
-
-		/**
-		 * Sets score.
-		 *
-		 * @param player the player number
-		 * @param score  the score
-		 */
-		void setScore(short player, int score) {
-			if (player == BLACK) blackScore = score;
-			else whiteScore = score;
-		}
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,394 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 证明数搜索（df-pn）
+ * 用于判断一个局面是否必胜（赛后分析等需要确切答案的场合），与 AI 的固定深度搜索互补：
+ * 深度优先的证明数搜索只沿着最有希望证明或否定的分支展开，可以证明非常深的必胜。
+ * <p>
+ * 与或树的着法与算杀（ThreatSearch 的 VCT）相同：
+ * 进攻方（或节点）走冲四、活三，或者挡住防守方的冲四；
+ * 防守方（与节点）挡住冲四，或者走所有能阻止活三的位置以及自己的冲四。
+ * 所以证明（PROVEN）一定是真正的必胜；否定（DISPROVEN）表示在威胁空间内没有必胜，
+ * 并不表示进攻方一定不能赢。
+ * <p>
+ * 证明数、否定数储存在自己的置换表中，表的大小即内存上限。
+ * <p>
+ * The depth-first proof-number solver.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class DfpnSolver {
+	/**
+	 * 结果：在预算内没有得出结论
+	 */
+	public static final int UNKNOWN = 0;
+	/**
+	 * 结果：进攻方必胜
+	 */
+	public static final int PROVEN = 1;
+	/**
+	 * 结果：在威胁空间内进攻方没有必胜
+	 */
+	public static final int DISPROVEN = 2;
+	/**
+	 * 证明数、否定数的无穷大
+	 */
+	private static final int INFINITY = Integer.MAX_VALUE / 2;
+	/**
+	 * 与 Zobrist 键异或，区分与节点（防守方下棋）和或节点
+	 */
+	private static final long AND_NODE_KEY = 0xD6E8FEB86659FD93L;
+	/**
+	 * 与 Zobrist 键异或，区分不同的进攻方
+	 * 用法：ATTACKER_KEY[attacker - BLACK]
+	 */
+	private static final long[] ATTACKER_KEY = {0x8CB92BA72F3D8DD7L, 0xC2B2AE3D27D4EB4FL};
+	/**
+	 * 每个表项所占的字节数（键 8 字节，证明数、否定数各 4 字节）
+	 */
+	private static final int ENTRY_BYTES = 16;
+
+	/**
+	 * 置换表：键、证明数、否定数，下标相同的为同一个表项
+	 * 已有结论（证明数或否定数为 0）的表项只会被另一个有结论的表项替换，其它情况总是替换
+	 */
+	private final long[] keys;
+	private final int[] proofs, disproofs;
+	/**
+	 * 表项数量 - 1，表项数量总是 2 的幂
+	 */
+	private final int mask;
+	/**
+	 * 搜索所用的棋盘副本
+	 */
+	private final ThreatBoard threats = new ThreatBoard();
+	/**
+	 * 每层的着法及其证明数、否定数、Zobrist 键，用到时才分配
+	 * 用法：moves[ply][i]
+	 */
+	private final int[][] moves = new int[226][], childProofs = new int[226][], childDisproofs = new int[226][];
+	private final long[][] childKeys = new long[226][];
+	/**
+	 * 当前的进攻方和防守方
+	 */
+	private short attacker, defender;
+	/**
+	 * 上一次求解的节点数及上限
+	 */
+	private long nodes, nodeLimit;
+	/**
+	 * 上一次证明的证明树大小
+	 */
+	private long proofSize;
+	/**
+	 * 上一次求解得到的最佳着法（row * 15 + column），没有时为 -1
+	 */
+	private int bestMove;
+
+	/**
+	 * 构造器
+	 *
+	 * @param tableSizeMB 置换表大小（MB），实际大小向下取整到 2 的幂
+	 * @throws ValueOutOfRangeException 大小不为正数
+	 */
+	public DfpnSolver(int tableSizeMB) throws ValueOutOfRangeException {
+		if (tableSizeMB <= 0) {
+			throw new ValueOutOfRangeException();
+		}
+		long entries = Long.highestOneBit(tableSizeMB * 1024L * 1024L / ENTRY_BYTES);
+		entries = Math.min(entries, 1 << 30);
+		this.mask = (int) entries - 1;
+		this.keys = new long[(int) entries];
+		this.proofs = new int[(int) entries];
+		this.disproofs = new int[(int) entries];
+	}
+
+	/**
+	 * 求解：判断轮到进攻方下棋时，进攻方是否必胜
+	 *
+	 * @param board     棋盘（不会被修改）
+	 * @param attacker  进攻方（BLACK, WHITE）
+	 * @param nodeLimit 节点数上限
+	 * @return PROVEN, DISPROVEN 或 UNKNOWN
+	 * @throws ValueOutOfRangeException 进攻方不存在
+	 */
+	public int solve(Board board, short attacker, long nodeLimit) throws ValueOutOfRangeException {
+		if (attacker != Board.BLACK && attacker != Board.WHITE) {
+			throw new ValueOutOfRangeException();
+		}
+		this.attacker = attacker;
+		this.defender = attacker == Board.BLACK ? Board.WHITE : Board.BLACK;
+		this.nodes = 0;
+		this.nodeLimit = nodeLimit;
+		this.proofSize = 0;
+		this.bestMove = -1;
+		if (board.isEnd() != Board.CONTINUE)
+			return board.isEnd() == attacker ? PROVEN : DISPROVEN;
+
+		threats.load(board);
+		try {
+			long key = threats.key() ^ ATTACKER_KEY[attacker - Board.BLACK];
+			long result = mid(true, 0, key, INFINITY, INFINITY);
+			int proof = (int) (result >>> 32), disproof = (int) result;
+			if (proof == 0) {
+				proofSize = proofSize(true, 0, key, new HashSet<>());
+				return PROVEN;
+			}
+			bestMove = mostPromising(key);
+			return disproof == 0 ? DISPROVEN : UNKNOWN;
+		} finally {
+			threats.unload();
+		}
+	}
+
+	/**
+	 * Gets nodes.
+	 *
+	 * @return 上一次求解展开的节点数
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 上一次证明的证明树大小（节点数）
+	 * 经过不同顺序到达的同一局面只计算一次；
+	 * 已证明的子节点被置换表中其它有结论的表项替换时，该子树只计为一个节点，所以这是一个下限
+	 *
+	 * @return 证明树大小，没有证明时为 0
+	 */
+	public long getProofSize() {
+		return proofSize;
+	}
+
+	/**
+	 * 上一次求解得到的最佳着法
+	 * 证明时是必胜的第一步，否则是最有希望的一步
+	 *
+	 * @return {row, column}，没有时为 null
+	 */
+	public int[] getBestMove() {
+		return bestMove < 0 ? null : new int[]{bestMove / 15, bestMove % 15};
+	}
+
+	/**
+	 * 清空置换表
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+	}
+
+	/**
+	 * 多重迭代加深（MID）：展开节点，直到证明数或否定数达到阈值
+	 *
+	 * @param or                是否为或节点（进攻方下棋）
+	 * @param ply               当前层数
+	 * @param key               当前节点的键
+	 * @param proofThreshold    证明数阈值
+	 * @param disproofThreshold 否定数阈值
+	 * @return 证明数 << 32 | 否定数
+	 */
+	private long mid(boolean or, int ply, long key, int proofThreshold, int disproofThreshold) {
+		nodes++;
+		allocate(ply);
+		int[] moves = this.moves[ply], proofs = childProofs[ply], disproofs = childDisproofs[ply];
+		long[] keys = childKeys[ply];
+		int count = generate(or, moves);
+		if (count < 0) {
+			int proof = count == -PROVEN ? 0 : INFINITY, disproof = count == -PROVEN ? INFINITY : 0;
+//			根节点已经可以连五
+			if (ply == 0 && proof == 0)
+				bestMove = moves[0];
+			store(key, proof, disproof);
+			return (long) proof << 32 | disproof;
+		}
+
+		short player = or ? attacker : defender;
+		for (int i = 0; i < count; i++) {
+			keys[i] = key ^ AND_NODE_KEY ^ Board.zobrist(moves[i] / 15, moves[i] % 15, player);
+			long entry = lookup(keys[i]);
+			proofs[i] = (int) (entry >>> 32);
+			disproofs[i] = (int) entry;
+		}
+		while (true) {
+//			或节点：证明数取最小，否定数求和；与节点相反
+			int proof = or ? INFINITY : 0, disproof = or ? 0 : INFINITY;
+			int best = 0, bestValue = INFINITY + 1, second = INFINITY;
+			for (int i = 0; i < count; i++) {
+				int value = or ? proofs[i] : disproofs[i];
+				if (value < bestValue) {
+					second = bestValue;
+					bestValue = value;
+					best = i;
+				} else if (value < second) {
+					second = value;
+				}
+				if (or) {
+					proof = Math.min(proof, proofs[i]);
+					disproof = Math.min(INFINITY, disproof + disproofs[i]);
+				} else {
+					proof = Math.min(INFINITY, proof + proofs[i]);
+					disproof = Math.min(disproof, disproofs[i]);
+				}
+			}
+			second = Math.min(second, INFINITY);
+			if (proof >= proofThreshold || disproof >= disproofThreshold || nodes >= nodeLimit) {
+//				在这里记录根节点的必胜着法，不依赖置换表中子节点的表项还在
+				if (ply == 0 && proof == 0)
+					bestMove = moves[best];
+				store(key, proof, disproof);
+				return (long) proof << 32 | disproof;
+			}
+
+//			只展开最有希望的子节点，阈值取到第二好的子节点为止
+			int childProofThreshold, childDisproofThreshold;
+			if (or) {
+				childProofThreshold = Math.min(proofThreshold, second + 1);
+				childDisproofThreshold = disproofThreshold - disproof + disproofs[best];
+			} else {
+				childProofThreshold = proofThreshold - proof + proofs[best];
+				childDisproofThreshold = Math.min(disproofThreshold, second + 1);
+			}
+			int cell = moves[best];
+			threats.place(cell, player);
+			long result = mid(!or, ply + 1, keys[best], childProofThreshold, childDisproofThreshold);
+			threats.place(cell, Board.EMPTY);
+			proofs[best] = (int) (result >>> 32);
+			disproofs[best] = (int) result;
+		}
+	}
+
+	/**
+	 * 生成着法
+	 *
+	 * @param or  是否为或节点（进攻方下棋）
+	 * @param out 结果（row * 15 + column）
+	 * @return 着法数量；已有结论时为 -PROVEN 或 -DISPROVEN
+	 */
+	private int generate(boolean or, int[] out) {
+		if (or) {
+			if (threats.fiveSquares(attacker, out) > 0)
+				return -PROVEN;
+			int fives = threats.fiveSquares(defender, out);
+			if (fives > 1)
+				return -DISPROVEN;
+			if (fives == 1)
+				return 1;
+			int count = threats.threatMoves(attacker, true, out);
+			return count > 0 ? count : -DISPROVEN;
+		}
+		if (threats.fiveSquares(defender, out) > 0)
+			return -DISPROVEN;
+		int fives = threats.fiveSquares(attacker, out);
+		if (fives > 1)
+			return -PROVEN;
+		if (fives == 1)
+			return 1;
+		int count = threats.threeDefences(attacker, out);
+		if (count == 0)
+			return -DISPROVEN;
+		return threats.fourMoves(defender, out, count);
+	}
+
+	/**
+	 * 计算证明树的大小，或节点只计算一个已证明的子节点，与节点计算所有子节点
+	 * 已经计算过的节点（置换）不再重复计算
+	 *
+	 * @param or      是否为或节点
+	 * @param ply     当前层数
+	 * @param key     当前节点的键
+	 * @param visited 已经计算过的节点的键
+	 * @return 证明树中新计算的节点数
+	 */
+	private long proofSize(boolean or, int ply, long key, Set<Long> visited) {
+		if (!visited.add(key))
+			return 0;
+		allocate(ply);
+		int[] moves = this.moves[ply];
+		int count = generate(or, moves);
+		if (count < 0)
+			return 1;
+		short player = or ? attacker : defender;
+		long size = 1;
+		for (int i = 0; i < count; i++) {
+			int cell = moves[i];
+			long childKey = key ^ AND_NODE_KEY ^ Board.zobrist(cell / 15, cell % 15, player);
+//			或节点只走已证明的子节点；找不到时（表项已被替换）这个节点只计为一个节点
+			if (or && lookup(childKey) >>> 32 != 0)
+				continue;
+			threats.place(cell, player);
+			size += proofSize(!or, ply + 1, childKey, visited);
+			threats.place(cell, Board.EMPTY);
+			if (or)
+				break;
+		}
+		return size;
+	}
+
+	/**
+	 * 根节点证明数最小的着法
+	 *
+	 * @param key 根节点的键
+	 * @return 着法（row * 15 + column），没有着法时为 -1
+	 */
+	private int mostPromising(long key) {
+		int[] moves = this.moves[0];
+		int count = generate(true, moves);
+		int best = -1, bestProof = Integer.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			long childKey = key ^ AND_NODE_KEY ^ Board.zobrist(moves[i] / 15, moves[i] % 15, attacker);
+			int proof = (int) (lookup(childKey) >>> 32);
+			if (proof < bestProof) {
+				bestProof = proof;
+				best = moves[i];
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * 分配第 ply 层所用的数组
+	 *
+	 * @param ply 层数
+	 */
+	private void allocate(int ply) {
+		if (moves[ply] == null) {
+			moves[ply] = new int[225];
+			childProofs[ply] = new int[225];
+			childDisproofs[ply] = new int[225];
+			childKeys[ply] = new long[225];
+		}
+	}
+
+	/**
+	 * 查找置换表
+	 *
+	 * @param key 节点的键
+	 * @return 证明数 << 32 | 否定数，未命中时为 (1, 1)
+	 */
+	private long lookup(long key) {
+		int index = (int) (key ^ (key >>> 32)) & mask;
+		if (keys[index] == key)
+			return (long) proofs[index] << 32 | disproofs[index];
+		return 1L << 32 | 1;
+	}
+
+	/**
+	 * 储存证明数和否定数
+	 *
+	 * @param key      节点的键
+	 * @param proof    证明数
+	 * @param disproof 否定数
+	 */
+	private void store(long key, int proof, int disproof) {
+		int index = (int) (key ^ (key >>> 32)) & mask;
+//		不用没有结论的表项替换其它局面已有结论的表项
+		if (keys[index] != key && keys[index] != 0 && (proofs[index] == 0 || disproofs[index] == 0)
+						&& proof != 0 && disproof != 0)
+			return;
+		keys[index] = key;
+		proofs[index] = proof;
+		disproofs[index] = disproof;
+	}
+}
@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+/**
+ * 局面估分缓存
+ * 以局面的 64 位键为键，每个局面只储存两个 int（例如 BatchEvaluator 储存搜索的分数和最佳着法），不保存任何棋盘数据。
+ * 容量固定，满了以后按 CLOCK（第二次机会）算法淘汰：
+ * 缓存分为若干组，每组 WAYS 个槽位，每个槽位有一个访问标记，
+ * 插入时从该组的指针处开始找，跳过（并清除）有访问标记的槽位，替换第一个没有标记的。
+ * <p>
+ * A fixed-capacity, set-associative evaluation cache with CLOCK eviction.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class EvalCache {
+	/**
+	 * 默认容量（表项数）
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	/**
+	 * get 未命中时的返回值（第一个 int 不能是 Integer.MIN_VALUE，所以不会与有效数据冲突）
+	 */
+	public static final long MISS = Long.MIN_VALUE;
+	/**
+	 * 每组的槽位数
+	 */
+	private static final int WAYS = 4;
+	/**
+	 * 槽位状态：空、有数据、有数据且最近被访问过
+	 */
+	private static final byte EMPTY = 0, PRESENT = 1, REFERENCED = 2;
+
+	/**
+	 * 表本身，下标相同的为同一个表项
+	 */
+	private final long[] keys;
+	private final int[] firsts, seconds;
+	private final byte[] states;
+	/**
+	 * 每组的 CLOCK 指针
+	 */
+	private final byte[] hands;
+	/**
+	 * 组数 - 1，组数总是 2 的幂
+	 */
+	private final int setMask;
+	/**
+	 * 统计：命中、未命中、淘汰次数，以及当前表项数
+	 */
+	private long hits, misses, evictions;
+	private int size;
+
+	/**
+	 * 构造器
+	 *
+	 * @param capacity 容量（表项数），实际容量向下取整到 2 的幂，至少为 WAYS
+	 * @throws ValueOutOfRangeException 容量不为正数
+	 */
+	public EvalCache(int capacity) throws ValueOutOfRangeException {
+		if (capacity <= 0) {
+			throw new ValueOutOfRangeException();
+		}
+		int sets = Math.max(1, Integer.highestOneBit(capacity) / WAYS);
+		this.setMask = sets - 1;
+		this.keys = new long[sets * WAYS];
+		this.firsts = new int[sets * WAYS];
+		this.seconds = new int[sets * WAYS];
+		this.states = new byte[sets * WAYS];
+		this.hands = new byte[sets];
+	}
+
+	/**
+	 * 从 get 的结果中取出第一个 int
+	 *
+	 * @param entry get 返回的数据
+	 * @return 第一个 int
+	 */
+	public static int first(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	/**
+	 * 从 get 的结果中取出第二个 int
+	 *
+	 * @param entry get 返回的数据
+	 * @return 第二个 int
+	 */
+	public static int second(long entry) {
+		return (int) entry;
+	}
+
+	/**
+	 * 查找局面
+	 *
+	 * @param key 局面的键
+	 * @return 第一个 int << 32 | 第二个 int，未命中时为 MISS
+	 */
+	public long get(long key) {
+		int base = setIndex(key) * WAYS;
+		for (int slot = base; slot < base + WAYS; slot++) {
+			if (states[slot] != EMPTY && keys[slot] == key) {
+				states[slot] = REFERENCED;
+				hits++;
+				return (long) firsts[slot] << 32 | (seconds[slot] & 0xFFFFFFFFL);
+			}
+		}
+		misses++;
+		return MISS;
+	}
+
+	/**
+	 * 储存局面的两个 int，组内已满时按 CLOCK 淘汰一个表项
+	 *
+	 * @param key    局面的键
+	 * @param first  第一个 int，不能是 Integer.MIN_VALUE
+	 * @param second 第二个 int
+	 * @throws ValueOutOfRangeException first 是 Integer.MIN_VALUE
+	 */
+	public void put(long key, int first, int second) throws ValueOutOfRangeException {
+		if (first == Integer.MIN_VALUE) {
+			throw new ValueOutOfRangeException();
+		}
+		int set = setIndex(key), base = set * WAYS;
+		int slot = -1;
+		for (int i = base; i < base + WAYS; i++) {
+			if (states[i] != EMPTY && keys[i] == key) {
+				slot = i;
+				break;
+			}
+			if (slot == -1 && states[i] == EMPTY)
+				slot = i;
+		}
+		if (slot == -1) {
+//			组内已满：转动指针，给有访问标记的表项第二次机会
+			int hand = hands[set];
+			while (states[base + hand] == REFERENCED) {
+				states[base + hand] = PRESENT;
+				hand = (hand + 1) % WAYS;
+			}
+			slot = base + hand;
+			hands[set] = (byte) ((hand + 1) % WAYS);
+			evictions++;
+		} else if (states[slot] == EMPTY) {
+			size++;
+		}
+		keys[slot] = key;
+		firsts[slot] = first;
+		seconds[slot] = second;
+		states[slot] = PRESENT;
+	}
+
+	/**
+	 * 清空缓存（统计数据也清零）
+	 */
+	public void clear() {
+		Arrays.fill(states, EMPTY);
+		Arrays.fill(hands, (byte) 0);
+		hits = misses = evictions = 0;
+		size = 0;
+	}
+
+	/**
+	 * Gets size.
+	 *
+	 * @return 当前表项数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets capacity.
+	 *
+	 * @return 容量（表项数）
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 * Gets hits.
+	 *
+	 * @return 命中次数
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets misses.
+	 *
+	 * @return 未命中次数
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets evictions.
+	 *
+	 * @return 淘汰次数
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("size = %d/%d, hits = %d, misses = %d, evictions = %d",
+						size, capacity(), hits, misses, evictions);
+	}
+
+	/**
+	 * 计算键所对应的组
+	 *
+	 * @param key 局面的键
+	 * @return 组的编号
+	 */
+	private int setIndex(long key) {
+		return (int) (key ^ (key >>> 32)) & setMask;
+	}
+}
@@ -0,0 +1,221 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 对局注释
+ * 从文件中逐行读取对局记录（每行一局，格式见 BatchEvaluator.parseMoves），
+ * 对每一步棋搜索当前局面，输出引擎的最佳着法、最佳着法和实际着法的分数，以及是否为败着。
+ * <p>
+ * 对局在线程池上并行处理，结果按输入顺序写出；同时处理的对局数有上限，
+ * 所以输入和输出都是流式的，不需要把所有对局读入内存。
+ * 每个工作线程复用自己的 Board 和 AI：对局用 setChess 逐步增量重放，
+ * 搜索用 makeMove/unmakeMove，不为每一步重新构造棋盘；
+ * 同一局内保留置换表（相邻两步的局面大部分相同），换一局时清空。
+ * <p>
+ * 输出格式（制表符分隔）：
+ * <pre>
+ *  对局编号（输入的行号）  步数  玩家（B, W）  实际着法  最佳着法  最佳着法的分数  实际着法的分数  是否为败着（0, 1）
+ * </pre>
+ * 两个分数都从下棋一方的角度、以同样的深度计算；两者之差不小于 blunderThreshold 时为败着。
+ * 无法解析或者不合法的对局输出以 "#" 开头的一行，不影响其它对局。
+ * <p>
+ * Streams game records through a worker pool and writes per-move engine annotations in input order.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class GameAnnotator implements AutoCloseable {
+	/**
+	 * 默认的败着阈值：比最佳着法差一个活四以上
+	 */
+	static final int DEFAULT_BLUNDER_THRESHOLD = Board.STANDARDS.get("4+");
+	/**
+	 * 每个工作线程所用置换表的大小（MB）
+	 */
+	private static final int TABLE_SIZE = 4;
+	/**
+	 * 每个工作线程最多排队的对局数
+	 */
+	private static final int QUEUE_PER_WORKER = 4;
+
+	/**
+	 * 搜索深度
+	 */
+	private final int depth;
+	/**
+	 * 败着阈值
+	 */
+	private final int blunderThreshold;
+	/**
+	 * 工作线程数
+	 */
+	private final int workers;
+	/**
+	 * 线程池
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * 每个工作线程的棋盘和 AI，第一次使用时创建，之后一直复用
+	 */
+	private final ThreadLocal<Worker> worker;
+
+	/**
+	 * 构造器
+	 *
+	 * @param depth            搜索深度
+	 * @param workers          工作线程数
+	 * @param blunderThreshold 败着阈值（正数）
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 */
+	public GameAnnotator(int depth, int workers, int blunderThreshold) throws ValueOutOfRangeException {
+		if (depth < 1 || depth >= AI.MAX_PLY - 1 || workers < 1 || blunderThreshold <= 0) {
+			throw new ValueOutOfRangeException();
+		}
+		this.depth = depth;
+		this.workers = workers;
+		this.blunderThreshold = blunderThreshold;
+		this.pool = new ForkJoinPool(workers);
+		this.worker = ThreadLocal.withInitial(Worker::new);
+	}
+
+	/**
+	 * 注释一个文件中的所有对局
+	 *
+	 * @param args 输入文件，输出文件，搜索深度（默认 4），工作线程数（默认 CPU 数）
+	 */
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.out.println("Usage: GameAnnotator <input> <output> [depth] [workers]");
+			return;
+		}
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long start = System.nanoTime();
+		try (GameAnnotator annotator = new GameAnnotator(depth, workers, DEFAULT_BLUNDER_THRESHOLD)) {
+			long games = annotator.annotate(Paths.get(args[0]), Paths.get(args[1]));
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.err.printf("%d games, %.2f s, %.1f games/s%n", games, seconds, games / seconds);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 注释一个文件中的所有对局
+	 *
+	 * @param input  输入文件，每行一局
+	 * @param output 输出文件，已存在时覆盖
+	 * @return 对局数
+	 * @throws IOException 读写文件失败
+	 */
+	public long annotate(Path input, Path output) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+		     BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			return annotate(reader, writer);
+		}
+	}
+
+	/**
+	 * 注释所有对局
+	 * 空行会被跳过，但仍然计入行号
+	 *
+	 * @param reader 输入，每行一局
+	 * @param writer 输出
+	 * @return 对局数
+	 * @throws IOException 读写失败
+	 */
+	public long annotate(BufferedReader reader, Writer writer) throws IOException {
+		ArrayDeque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+		long lineNumber = 0, games = 0;
+		String line;
+		writer.write("# game\tply\tplayer\tmove\tbest\tbest score\tmove score\tblunder\n");
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			if (line.trim().isEmpty())
+				continue;
+			long game = lineNumber;
+			String moves = line;
+			pending.add(pool.submit(() -> worker.get().annotate(game, moves)));
+			games++;
+//			队列满了就先写出最早的一局
+			if (pending.size() >= workers * QUEUE_PER_WORKER)
+				writer.write(pending.poll().join());
+		}
+		while (!pending.isEmpty()) {
+			writer.write(pending.poll().join());
+		}
+		writer.flush();
+		return games;
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+	/**
+	 * 工作线程自己的棋盘和 AI
+	 */
+	private class Worker {
+		private final Board board = new Board();
+		private final AI ai = new AI(board, Board.BLACK, 1, TABLE_SIZE);
+
+		Worker() {
+			ai.verbose = false;
+			ai.setRandomTieBreak(false);
+		}
+
+		/**
+		 * 重放并注释一局
+		 * 已分胜负以后的着法被忽略
+		 *
+		 * @param game  对局编号
+		 * @param moves 着法序列
+		 * @return 注释，每一步一行
+		 */
+		String annotate(long game, String moves) {
+			StringBuilder builder = new StringBuilder();
+			try {
+				List<int[]> record = BatchEvaluator.parseMoves(moves);
+				board.reset();
+				ai.clear();
+				for (int ply = 0; ply < record.size() && board.isEnd() == Board.CONTINUE; ply++) {
+					int[] move = record.get(ply);
+					short player = (short) board.getPlayerTurn();
+					ai.aiNum = player;
+					List<int[]> outcome = new ArrayList<>();
+					ai.minMaxSearch(depth, outcome);
+					int[] best = outcome.get(0);
+//					最佳着法也用 searchMove 重新计算一次（大部分是置换表命中），与着法的分数用同样的方法比较
+					int bestScore = ai.searchMove(best[0], best[1], depth);
+					int moveScore = best[0] == move[0] && best[1] == move[1]
+									? bestScore : ai.searchMove(move[0], move[1], depth);
+					boolean blunder = (long) bestScore - moveScore >= blunderThreshold;
+					builder.append(game).append('\t').append(ply + 1)
+									.append('\t').append(player == Board.BLACK ? 'B' : 'W')
+									.append('\t').append(move[0]).append(',').append(move[1])
+									.append('\t').append(best[0]).append(',').append(best[1])
+									.append('\t').append(bestScore)
+									.append('\t').append(moveScore)
+									.append('\t').append(blunder ? 1 : 0).append('\n');
+					board.setChess(move[0], move[1], false);
+				}
+			} catch (ValueOutOfRangeException | RedundantChessException e) {
+				builder.append("# ").append(game).append('\t').append(e.getClass().getSimpleName()).append('\n');
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * 邻近空位集合
+ * 记录所有在一定范围内有足够多棋子的空位，作为 AI 的候选点
+ * 每个位置维护范围内棋子数的引用计数，落子/提子时只更新周围的位置，
+ * 集合本身用数组存放，遍历时每个候选点 O(1)
+ * <p>
+ * The set of empty positions that have at least {@code threshold} stones
+ * within a square of the given radius, maintained incrementally.
+ */
+class NeighborSet {
+	/**
+	 * 检测范围（切比雪夫距离）
+	 */
+	private final int radius;
+	/**
+	 * 至少需要的棋子数
+	 */
+	private final int threshold;
+	/**
+	 * 每个位置范围内（不含自身）的棋子数
+	 */
+	private final int[] counts = new int[225];
+	/**
+	 * 每个位置是否有棋子
+	 */
+	private final boolean[] occupied = new boolean[225];
+	/**
+	 * 集合中的位置（row * 15 + column），前 size 个有效
+	 */
+	private final int[] members = new int[225];
+	/**
+	 * 每个位置在 members 中的下标，不在集合中时为 -1
+	 */
+	private final int[] indices = new int[225];
+	/**
+	 * 集合大小
+	 */
+	private int size = 0;
+
+	/**
+	 * 构造器
+	 *
+	 * @param radius    检测范围
+	 * @param threshold 至少需要的棋子数
+	 */
+	NeighborSet(int radius, int threshold) {
+		this.radius = radius;
+		this.threshold = threshold;
+		Arrays.fill(indices, -1);
+	}
+
+	/**
+	 * 复制另一个集合的内容（范围和阈值必须相同）
+	 *
+	 * @param other 要复制的集合
+	 */
+	void copyFrom(NeighborSet other) {
+		System.arraycopy(other.counts, 0, counts, 0, 225);
+		System.arraycopy(other.occupied, 0, occupied, 0, 225);
+		System.arraycopy(other.members, 0, members, 0, 225);
+		System.arraycopy(other.indices, 0, indices, 0, 225);
+		size = other.size;
+	}
+
+	/**
+	 * 集合大小
+	 *
+	 * @return 候选点数量
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * 取出集合中的第 i 个位置
+	 *
+	 * @param i 下标 (0 - size-1)
+	 * @return 位置（row * 15 + column）
+	 */
+	int get(int i) {
+		return members[i];
+	}
+
+	/**
+	 * 判断某位置是否在集合中
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 * @return 是否在集合中
+	 */
+	boolean contains(int row, int column) {
+		return indices[row * 15 + column] != -1;
+	}
+
+	/**
+	 * 清空
+	 */
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			indices[members[i]] = -1;
+		}
+		Arrays.fill(counts, 0);
+		Arrays.fill(occupied, false);
+		size = 0;
+	}
+
+	/**
+	 * 在某位置放下一个棋子
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 */
+	void place(int row, int column) {
+		occupied[row * 15 + column] = true;
+		remove(row * 15 + column);
+		addAround(row, column, 1);
+	}
+
+	/**
+	 * 移走某位置的棋子
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 */
+	void take(int row, int column) {
+		occupied[row * 15 + column] = false;
+		addAround(row, column, -1);
+		refresh(row * 15 + column);
+	}
+
+	/**
+	 * 更新某位置周围所有位置的计数
+	 *
+	 * @param row    行号
+	 * @param column 列数
+	 * @param delta  +1 或 -1
+	 */
+	private void addAround(int row, int column, int delta) {
+		for (int i = Math.max(row - radius, 0); i <= Math.min(row + radius, 14); i++) {
+			for (int j = Math.max(column - radius, 0); j <= Math.min(column + radius, 14); j++) {
+				if (i == row && j == column)
+					continue;
+				int cell = i * 15 + j;
+				counts[cell] += delta;
+				refresh(cell);
+			}
+		}
+	}
+
+	/**
+	 * 根据计数重新确定某位置是否在集合中
+	 *
+	 * @param cell 位置
+	 */
+	private void refresh(int cell) {
+		if (!occupied[cell] && counts[cell] >= threshold) {
+			if (indices[cell] == -1) {
+				indices[cell] = size;
+				members[size++] = cell;
+			}
+		} else
+			remove(cell);
+	}
+
+	/**
+	 * 从集合中移除某位置（用最后一个元素填补空缺）
+	 *
+	 * @param cell 位置
+	 */
+	private void remove(int cell) {
+		int index = indices[cell];
+		if (index == -1)
+			return;
+		int last = members[--size];
+		members[index] = last;
+		indices[last] = index;
+		indices[cell] = -1;
+	}
+}
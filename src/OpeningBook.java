@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 开局库
+ * 离线对开局的前若干步做深度搜索，把局面 → 最佳着法及分数写成一个按键排序的二进制文件；
+ * 对局时把文件映射到内存，搜索前先二分查找，命中就直接落子。
+ * 键只对生成时的 Zobrist 随机数表有意义，所以文件头记录随机数表的指纹，不一致的文件拒绝打开。
+ * <p>
+ * 局面的键是棋子的 Zobrist 键（与 Board.getZobristKey 相同）再异或上轮到哪一方，
+ * 并且取棋盘 8 种对称变换（旋转、翻转）中最小的键，所以对称的局面只储存一次，
+ * 储存的着法也是变换后的坐标，查找时再变换回来。
+ * <p>
+ * 文件格式（大端）：
+ * <pre>
+ *  文件头 32 字节：MAGIC (int), VERSION (int), 条目数 (int), 最多棋子数 (int), 搜索深度 (int),
+ *    Zobrist 随机数表的指纹 (long), 保留 4 字节
+ *  条目 32 字节，按键（有符号 long）从小到大：
+ *    键 (long)
+ *    MOVES 个着法 (short, row * 15 + column，NO_MOVE 表示没有)，分数从高到低
+ *    MOVES 个分数 (int)，从下棋一方的角度
+ * </pre>
+ * <p>
+ * A sorted, memory-mapped opening book keyed by symmetry-canonical Zobrist keys.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class OpeningBook {
+	/**
+	 * 文件标识 "GMOB"
+	 */
+	static final int MAGIC = 0x474D4F42;
+	/**
+	 * 文件格式版本
+	 */
+	static final int VERSION = 2;
+	/**
+	 * 每个局面最多储存的着法数
+	 */
+	static final int MOVES = 4;
+	/**
+	 * 没有着法
+	 */
+	private static final short NO_MOVE = -1;
+	/**
+	 * 文件头和每个条目的字节数
+	 */
+	private static final int HEADER_SIZE = 32, ENTRY_SIZE = 8 + MOVES * 2 + MOVES * 4;
+	/**
+	 * 轮到白棋时与键异或
+	 */
+	private static final long WHITE_TO_MOVE = 0xD6E8FEB86659FD93L;
+
+	/**
+	 * 映射到内存的文件（只读）
+	 */
+	private final ByteBuffer buffer;
+	/**
+	 * 条目数
+	 */
+	private final int size;
+	/**
+	 * 库中局面最多的棋子数，棋子更多的局面不需要查找
+	 */
+	private final int maxStones;
+	/**
+	 * 生成时的搜索深度
+	 */
+	private final int depth;
+
+	/**
+	 * 构造器
+	 *
+	 * @param buffer 文件内容，已经检查过文件头
+	 */
+	private OpeningBook(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.size = buffer.getInt(8);
+		this.maxStones = buffer.getInt(12);
+		this.depth = buffer.getInt(16);
+	}
+
+	/**
+	 * 生成开局库
+	 *
+	 * @param args 输出文件（默认 opening.book），最多棋子数（默认 8），搜索深度（默认 5），每个局面展开的着法数（默认 2）
+	 */
+	public static void main(String[] args) {
+		Path path = Paths.get(args.length > 0 ? args[0] : "opening.book");
+		int stones = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+		int width = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+		long start = System.nanoTime();
+		try {
+			int size = build(path, stones, depth, width);
+			System.out.printf("%d positions, %.1f s%n", size, (System.nanoTime() - start) / 1e9);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * 打开开局库文件
+	 *
+	 * @param path 文件
+	 * @return 开局库
+	 * @throws IOException 读取失败，或者文件格式、版本、大小、Zobrist 指纹不对
+	 */
+	public static OpeningBook open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long length = channel.size();
+			if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+				throw new IOException("Illegal opening book size");
+			}
+			// 关闭文件后映射依然有效
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+				throw new IOException("Not an opening book, or wrong version");
+			}
+			if (buffer.getLong(20) != Board.zobristFingerprint()) {
+				throw new IOException("Opening book was built with different Zobrist keys");
+			}
+			if (HEADER_SIZE + (long) buffer.getInt(8) * ENTRY_SIZE != length) {
+				throw new IOException("Opening book is truncated");
+			}
+			return new OpeningBook(buffer);
+		}
+	}
+
+	/**
+	 * 查找当前局面的最佳着法
+	 *
+	 * @param board  棋盘
+	 * @param player 下棋玩家（BLACK, WHITE）
+	 * @return 最佳着法 {row, column}，库中没有时为 null
+	 */
+	public int[] probe(Board board, short player) {
+		List<int[]> moves = probeAll(board, player);
+		return moves.isEmpty() ? null : new int[]{moves.get(0)[0], moves.get(0)[1]};
+	}
+
+	/**
+	 * 查找当前局面的所有着法
+	 *
+	 * @param board  棋盘
+	 * @param player 下棋玩家（BLACK, WHITE）
+	 * @return 着法 {row, column, score}，分数从高到低，库中没有时为空
+	 */
+	public List<int[]> probeAll(Board board, short player) {
+		List<int[]> result = new ArrayList<>();
+		if (board.count() > maxStones || board.isEnd() != Board.CONTINUE)
+			return result;
+		long[] canonical = canonicalKey(board, player);
+		int entry = find(canonical[0]);
+		if (entry < 0)
+			return result;
+		int symmetry = (int) canonical[1];
+		int offset = HEADER_SIZE + entry * ENTRY_SIZE;
+		short[][] cells = board.getBoard();
+		for (int i = 0; i < MOVES; i++) {
+			short move = buffer.getShort(offset + 8 + i * 2);
+			if (move == NO_MOVE)
+				break;
+			int cell = untransform(move, symmetry);
+			// 键冲突时着法可能落在已有棋子上
+			if (cells[cell / 15][cell % 15] != Board.EMPTY)
+				return new ArrayList<>();
+			result.add(new int[]{cell / 15, cell % 15, buffer.getInt(offset + 8 + MOVES * 2 + i * 4)});
+		}
+		return result;
+	}
+
+	/**
+	 * Gets size.
+	 *
+	 * @return 条目数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets max stones.
+	 *
+	 * @return 库中局面最多的棋子数
+	 */
+	public int getMaxStones() {
+		return maxStones;
+	}
+
+	/**
+	 * Gets depth.
+	 *
+	 * @return 生成时的搜索深度
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * 生成开局库并写入文件
+	 * 从空棋盘开始，对每个局面搜索前十个候选点的分数，储存最好的 MOVES 个，
+	 * 再沿最好的 width 个（互不对称的）着法展开（双方都是），直到棋盘上有 stones 个棋子。
+	 * 对称或者经过不同顺序到达的同一局面只搜索一次。
+	 *
+	 * @param path   输出文件，已存在时覆盖
+	 * @param stones 最多棋子数
+	 * @param depth  搜索深度
+	 * @param width  每个局面展开的着法数
+	 * @return 条目数
+	 * @throws IOException              写入失败
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 */
+	public static int build(Path path, int stones, int depth, int width) throws IOException, ValueOutOfRangeException {
+		if (stones < 1 || stones >= 225 || depth < 1 || depth >= AI.MAX_PLY - 1 || width < 1 || width > MOVES) {
+			throw new ValueOutOfRangeException();
+		}
+		Board board = new Board();
+		AI ai = new AI(board, Board.BLACK, 1);
+		ai.verbose = false;
+		ai.setRandomTieBreak(false);
+		Map<Long, long[]> entries = new HashMap<>();
+		expand(ai, Board.BLACK, stones, depth, width, entries);
+
+		Long[] keys = entries.keySet().toArray(new Long[0]);
+		Arrays.sort(keys);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + keys.length * ENTRY_SIZE);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(keys.length).putInt(stones).putInt(depth)
+						.putLong(Board.zobristFingerprint());
+		buffer.position(HEADER_SIZE);
+		for (Long key : keys) {
+			long[] moves = entries.get(key);
+			buffer.putLong(key);
+			for (int i = 0; i < MOVES; i++) {
+				buffer.putShort(i < moves.length ? (short) (moves[i] >>> 32) : NO_MOVE);
+			}
+			for (int i = 0; i < MOVES; i++) {
+				buffer.putInt(i < moves.length ? (int) moves[i] : 0);
+			}
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		return keys.length;
+	}
+
+	/**
+	 * 搜索并展开一个局面
+	 *
+	 * @param ai      搜索所用的 AI（及其棋盘）
+	 * @param player  下棋玩家
+	 * @param stones  最多棋子数
+	 * @param depth   搜索深度
+	 * @param width   展开的着法数
+	 * @param entries 已经搜索过的局面：规范键 -> 着法（变换后的 cell << 32 | 分数），分数从高到低
+	 */
+	private static void expand(AI ai, short player, int stones, int depth, int width, Map<Long, long[]> entries) {
+		Board board = ai.board;
+		if (board.count() >= stones || board.isEnd() != Board.CONTINUE)
+			return;
+		long[] canonical = canonicalKey(board, player);
+		if (entries.containsKey(canonical[0]))
+			return;
+
+		List<int[]> scored = new ArrayList<>();
+		if (board.count() == 0) {
+			scored.add(new int[]{7, 7, 0});
+		} else {
+			ai.aiNum = player;
+			List<int[]> points = ai.generatePossiblePoints(player);
+			for (int[] point : points.subList(0, Math.min(10, points.size()))) {
+				scored.add(new int[]{point[0], point[1], ai.searchMove(point[0], point[1], depth)});
+			}
+			// 稳定排序，同分时保持候选点的顺序
+			scored.sort((a, b) -> Integer.compare(b[2], a[2]));
+		}
+		long[] moves = new long[Math.min(MOVES, scored.size())];
+		for (int i = 0; i < moves.length; i++) {
+			int[] move = scored.get(i);
+			moves[i] = (long) transform(move[0] * 15 + move[1], (int) canonical[1]) << 32 | (move[2] & 0xFFFFFFFFL);
+		}
+		entries.put(canonical[0], moves);
+
+		// 对称的着法得到同一个局面，只算一次
+		short enemy = player == Board.BLACK ? Board.WHITE : Board.BLACK;
+		List<Long> children = new ArrayList<>();
+		for (int i = 0; i < scored.size() && children.size() < width; i++) {
+			int[] move = scored.get(i);
+			board.makeMove(move[0], move[1], player);
+			long child = canonicalKey(board, enemy)[0];
+			if (!children.contains(child)) {
+				children.add(child);
+				expand(ai, enemy, stones, depth, width, entries);
+			}
+			board.unmakeMove();
+		}
+	}
+
+	/**
+	 * 二分查找
+	 *
+	 * @param key 规范键
+	 * @return 条目编号，没有时为 -1
+	 */
+	private int find(long key) {
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long current = buffer.getLong(HEADER_SIZE + middle * ENTRY_SIZE);
+			if (current < key)
+				low = middle + 1;
+			else if (current > key)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	/**
+	 * 计算局面的规范键：8 种对称变换下键的最小值
+	 *
+	 * @param board  棋盘
+	 * @param player 下棋玩家
+	 * @return {规范键, 得到规范键的变换编号}
+	 */
+	private static long[] canonicalKey(Board board, short player) {
+		long[] keys = new long[8];
+		short[][] cells = board.getBoard();
+		for (int row = 0; row < 15; row++) {
+			for (int column = 0; column < 15; column++) {
+				if (cells[row][column] == Board.EMPTY)
+					continue;
+				for (int symmetry = 0; symmetry < 8; symmetry++) {
+					int cell = transform(row * 15 + column, symmetry);
+					keys[symmetry] ^= Board.zobrist(cell / 15, cell % 15, cells[row][column]);
+				}
+			}
+		}
+		int best = 0;
+		for (int symmetry = 1; symmetry < 8; symmetry++) {
+			if (keys[symmetry] < keys[best])
+				best = symmetry;
+		}
+		return new long[]{keys[best] ^ (player == Board.WHITE ? WHITE_TO_MOVE : 0), best};
+	}
+
+	/**
+	 * 对称变换：依次左右翻转（位 0）、上下翻转（位 1）、沿主对角线翻转（位 2）
+	 *
+	 * @param cell     row * 15 + column
+	 * @param symmetry 变换编号 (0 - 7)
+	 * @return 变换后的 row * 15 + column
+	 */
+	private static int transform(int cell, int symmetry) {
+		int row = cell / 15, column = cell % 15;
+		if ((symmetry & 1) != 0) column = 14 - column;
+		if ((symmetry & 2) != 0) row = 14 - row;
+		if ((symmetry & 4) != 0) {
+			int temp = row;
+			row = column;
+			column = temp;
+		}
+		return row * 15 + column;
+	}
+
+	/**
+	 * transform 的逆变换
+	 *
+	 * @param cell     变换后的 row * 15 + column
+	 * @param symmetry 变换编号 (0 - 7)
+	 * @return 原来的 row * 15 + column
+	 */
+	private static int untransform(int cell, int symmetry) {
+		int row = cell / 15, column = cell % 15;
+		if ((symmetry & 4) != 0) {
+			int temp = row;
+			row = column;
+			column = temp;
+		}
+		if ((symmetry & 2) != 0) row = 14 - row;
+		if ((symmetry & 1) != 0) column = 14 - column;
+		return row * 15 + column;
+	}
+}
@@ -0,0 +1,13 @@
+/**
+ * The type Search aborted exception.
+ * 搜索被中途停止（例如其它线程已经完成搜索）时抛出
+ */
+class SearchAbortedException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Instantiates a new Search aborted exception.
+   */
+  SearchAbortedException() {
+  }
+}
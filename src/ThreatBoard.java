@@ -0,0 +1,206 @@
+/**
+ * 算杀所用的棋盘
+ * 棋盘的位棋盘副本，以及在其上精确生成威胁着法（连五点、冲四、活三及其防守点）的方法。
+ * 成四/成三都用线的掩码判断，不依赖棋形打分；
+ * 同类着法按原棋盘的单点得分（pointScoreSum）排序，分数高的在前。
+ * <p>
+ * A bitboard copy of a {@link Board} with exact threat move generation,
+ * shared by {@link ThreatSearch} and {@link DfpnSolver}.
+ */
+class ThreatBoard {
+	/**
+	 * 原棋盘，只用于读取单点得分
+	 */
+	private Board board;
+	/**
+	 * 位棋盘副本
+	 */
+	private final BitBoard bits = new BitBoard();
+	/**
+	 * 位棋盘副本的 Zobrist 键
+	 */
+	private long key;
+	/**
+	 * 记录某个位置是否已经加入集合，避免重复
+	 * 用法：mark[cell] == stamp 表示已加入
+	 */
+	private final int[] mark = new int[225];
+	private int stamp = 0;
+
+	/**
+	 * 复制棋盘
+	 *
+	 * @param board 棋盘（不会被修改）
+	 */
+	void load(Board board) {
+		this.board = board;
+		this.bits.copyFrom(board.bitBoard());
+		this.key = board.getZobristKey();
+	}
+
+	/**
+	 * 释放对原棋盘的引用
+	 */
+	void unload() {
+		this.board = null;
+	}
+
+	/**
+	 * Gets key.
+	 *
+	 * @return 当前局面的 Zobrist 键
+	 */
+	long key() {
+		return key;
+	}
+
+	/**
+	 * 找出某玩家在整个棋盘上所有的连五点
+	 *
+	 * @param player 玩家
+	 * @param out    结果（row * 15 + column）
+	 * @return 连五点数量
+	 */
+	int fiveSquares(short player, int[] out) {
+		stamp++;
+		int count = 0;
+		for (int direction = 0; direction < 4; direction++) {
+			for (int line = 0; line < BitBoard.LINE_COUNT[direction]; line++) {
+				int squares = BitBoard.fiveSquares(bits.lineMask(player, direction, line),
+								bits.emptyMask(direction, line), BitBoard.length(direction, line));
+				count = addSquares(direction, line, squares, out, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 找出进攻方所有能阻止活三变成活四的位置
+	 * 即所有能成活四的点，以及成活四之后的连五点
+	 *
+	 * @param attacker 进攻方
+	 * @param out      结果（row * 15 + column）
+	 * @return 位置数量，为 0 表示进攻方没有活三
+	 */
+	int threeDefences(short attacker, int[] out) {
+		stamp++;
+		int count = 0;
+		for (int direction = 0; direction < 4; direction++) {
+			for (int line = 0; line < BitBoard.LINE_COUNT[direction]; line++) {
+				int own = bits.lineMask(attacker, direction, line), empty = bits.emptyMask(direction, line);
+				int length = BitBoard.length(direction, line);
+				int squares = BitBoard.straightFourSquares(own, empty, length);
+				for (int rest = squares; rest != 0; rest &= rest - 1) {
+					int bit = rest & -rest;
+					squares |= BitBoard.fiveSquares(own | bit, empty & ~bit, length);
+				}
+				count = addSquares(direction, line, squares, out, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 找出某玩家所有能成四的空位，接在已有的结果后面
+	 * 与之前生成这些结果的调用共用去重标记，所以不会重复
+	 *
+	 * @param player 玩家
+	 * @param out    结果（row * 15 + column）
+	 * @param count  已有的数量
+	 * @return 新的数量
+	 */
+	int fourMoves(short player, int[] out, int count) {
+		for (int direction = 0; direction < 4; direction++) {
+			for (int line = 0; line < BitBoard.LINE_COUNT[direction]; line++) {
+				int squares = BitBoard.fourSquares(bits.lineMask(player, direction, line),
+								bits.emptyMask(direction, line), BitBoard.length(direction, line));
+				count = addSquares(direction, line, squares, out, count);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * 生成进攻方的进攻着法：先冲四，再活三（只在 VCT 时），每一类按单点得分从高到低排序
+	 *
+	 * @param attacker 进攻方
+	 * @param threes   是否包括活三
+	 * @param out      结果（row * 15 + column）
+	 * @return 着法数量
+	 */
+	int threatMoves(short attacker, boolean threes, int[] out) {
+		stamp++;
+		int fours = fourMoves(attacker, out, 0);
+		sortMoves(attacker, out, 0, fours);
+		if (!threes)
+			return fours;
+		int count = fours;
+		for (int direction = 0; direction < 4; direction++) {
+			for (int line = 0; line < BitBoard.LINE_COUNT[direction]; line++) {
+				int squares = BitBoard.threeSquares(bits.lineMask(attacker, direction, line),
+								bits.emptyMask(direction, line), BitBoard.length(direction, line));
+				count = addSquares(direction, line, squares, out, count);
+			}
+		}
+		sortMoves(attacker, out, fours, count);
+		return count;
+	}
+
+	/**
+	 * 将 [from, to) 范围内的着法按棋盘上的单点得分从高到低排序（插入排序）
+	 *
+	 * @param player 玩家
+	 * @param moves  着法（row * 15 + column）
+	 * @param from   起始（包含）
+	 * @param to     结束（不包含）
+	 */
+	private void sortMoves(short player, int[] moves, int from, int to) {
+		for (int i = from + 1; i < to; i++) {
+			int move = moves[i], score = board.pointScoreSum(player, move / 15, move % 15);
+			int j = i - 1;
+			while (j >= from && board.pointScoreSum(player, moves[j] / 15, moves[j] % 15) < score) {
+				moves[j + 1] = moves[j];
+				j--;
+			}
+			moves[j + 1] = move;
+		}
+	}
+
+	/**
+	 * 在位棋盘副本上落子或提子，同时更新 Zobrist 键
+	 *
+	 * @param cell   位置（row * 15 + column）
+	 * @param player 棋子（BLACK, WHITE），EMPTY 表示提走该位置上的棋子
+	 */
+	void place(int cell, short player) {
+		int row = cell / 15, column = cell % 15;
+		if (player == Board.EMPTY) {
+			short old = (bits.lineMask(Board.BLACK, BitBoard.HORIZONTAL, row) >>> column & 1) != 0 ? Board.BLACK : Board.WHITE;
+			key ^= Board.zobrist(row, column, old);
+		} else {
+			key ^= Board.zobrist(row, column, player);
+		}
+		bits.set(row, column, player);
+	}
+
+	/**
+	 * 将一条线上的位置加入结果（不重复）
+	 *
+	 * @param direction 方向
+	 * @param line      线的编号
+	 * @param squares   位置的掩码
+	 * @param out       结果（row * 15 + column）
+	 * @param count     已有的数量
+	 * @return 新的数量
+	 */
+	private int addSquares(int direction, int line, int squares, int[] out, int count) {
+		for (; squares != 0; squares &= squares - 1) {
+			int cell = BitBoard.cell(direction, line, Integer.numberOfTrailingZeros(squares));
+			if (mark[cell] != stamp) {
+				mark[cell] = stamp;
+				out[count++] = cell;
+			}
+		}
+		return count;
+	}
+}
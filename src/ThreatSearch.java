@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 算杀（威胁空间搜索）
+ * 只搜索进攻方的冲四/活三以及防守方被迫的应对，比全宽度的极大极小搜索快得多，
+ * 可以找到很深的必胜序列。
+ * <p>
+ * VCF（连续冲四）：进攻方每一步都必须成四，防守方只能挡在唯一的连五点上。
+ * VCT（连续冲四或活三）：进攻方还可以走活三，防守方的应对是所有能阻止活四的位置，
+ * 以及防守方自己所有的冲四（冲四是先手，进攻方必须先挡）。
+ * <p>
+ * 搜索在棋盘副本（ThreatBoard）上进行，成四/成三都精确判断，所以找到的序列一定是真正的必胜。
+ * <p>
+ * Threat-space search (VCF / VCT) with depth and node limits and a small result cache.
+ */
+class ThreatSearch {
+	/**
+	 * 模式：连续冲四
+	 */
+	static final int VCF = 0;
+	/**
+	 * 模式：连续冲四或活三
+	 */
+	static final int VCT = 1;
+	/**
+	 * 最多的进攻步数
+	 */
+	static final int MAX_DEPTH = 16;
+	/**
+	 * 结果缓存的大小
+	 */
+	private static final int CACHE_SIZE = 256;
+	/**
+	 * 与 Zobrist 键异或，区分不同的进攻方和模式
+	 * 用法：SALT[mode][attacker - BLACK]
+	 */
+	private static final long[][] SALT = {
+					{0x2545F4914F6CDD1DL, 0x9E3779B97F4A7C15L},
+					{0xBF58476D1CE4E5B9L, 0x94D049BB133111EBL}
+	};
+
+	/**
+	 * 搜索所用的棋盘副本
+	 */
+	private final ThreatBoard threats = new ThreatBoard();
+	/**
+	 * 当前搜索的模式
+	 */
+	private int mode;
+	/**
+	 * 当前搜索的节点数及上限
+	 */
+	private int nodes, nodeLimit;
+	/**
+	 * 当前搜索是否因节点数用完而中止
+	 */
+	private boolean aborted;
+	/**
+	 * 当前的变例：line[ply] 是第 ply 步（进攻方、防守方交替）
+	 */
+	private final int[] line = new int[MAX_DEPTH * 2 + 2];
+	/**
+	 * 找到的必胜序列长度
+	 */
+	private int lineLength;
+	/**
+	 * 每层生成的着法
+	 * 用法：moves[ply][i]
+	 */
+	private final int[][] moves = new int[MAX_DEPTH * 2 + 2][225];
+	/**
+	 * 同一次搜索内进攻失败的局面，以及失败时剩余的步数（步数更少时一定也失败）
+	 */
+	private final Map<Long, Integer> failed = new HashMap<>();
+	/**
+	 * 已经搜索过的局面的结果，没有找到必胜时为空数组
+	 */
+	private final Map<Long, int[]> cache = new LinkedHashMap<Long, int[]>(CACHE_SIZE, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * 搜索必胜序列
+	 * 同一个局面（同样的进攻方和模式）直接返回缓存的结果
+	 *
+	 * @param board     棋盘（不会被修改）
+	 * @param attacker  进攻方（BLACK, WHITE），轮到进攻方下棋
+	 * @param mode      VCF 或 VCT
+	 * @param depth     最多的进攻步数 (1 - MAX_DEPTH)
+	 * @param nodeLimit 节点数上限
+	 * @return 必胜序列（进攻方、防守方交替，每项是 {row, column}），没有找到时为空
+	 * @throws ValueOutOfRangeException 参数超出范围
+	 */
+	List<int[]> search(Board board, short attacker, int mode, int depth, int nodeLimit)
+					throws ValueOutOfRangeException {
+		if (attacker != Board.BLACK && attacker != Board.WHITE || mode != VCF && mode != VCT
+						|| depth < 1 || depth > MAX_DEPTH) {
+			throw new ValueOutOfRangeException();
+		}
+		long key = board.getZobristKey() ^ SALT[mode][attacker - Board.BLACK];
+		int[] result = cache.get(key);
+		this.nodes = 0;
+		if (result == null) {
+			threats.load(board);
+			this.mode = mode;
+			this.nodeLimit = nodeLimit;
+			this.aborted = false;
+			this.lineLength = 0;
+			failed.clear();
+			result = board.isEnd() == Board.CONTINUE && attack(attacker, depth, 0)
+							? Arrays.copyOf(line, lineLength) : new int[0];
+			cache.put(key, result);
+			threats.unload();
+		}
+		List<int[]> outcome = new ArrayList<>();
+		for (int cell : result) {
+			outcome.add(new int[]{cell / 15, cell % 15});
+		}
+		return outcome;
+	}
+
+	/**
+	 * 清空结果缓存
+	 */
+	void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * 上一次搜索的节点数
+	 *
+	 * @return 节点数，结果来自缓存时为 0
+	 */
+	int getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * 进攻方下棋：只要有一步能赢就算赢
+	 *
+	 * @param attacker 进攻方
+	 * @param depth    剩余的进攻步数
+	 * @param ply      当前步数
+	 * @return 是否必胜
+	 */
+	private boolean attack(short attacker, int depth, int ply) {
+		if (++nodes > nodeLimit) {
+			aborted = true;
+			return false;
+		}
+		short defender = attacker == Board.BLACK ? Board.WHITE : Board.BLACK;
+		int[] moves = this.moves[ply];
+//		已经有连五点，直接获胜
+		if (threats.fiveSquares(attacker, moves) > 0) {
+			line[ply] = moves[0];
+			lineLength = ply + 1;
+			return true;
+		}
+		if (depth == 0)
+			return false;
+		long key = threats.key() ^ SALT[mode][attacker - Board.BLACK];
+		Integer failedDepth = failed.get(key);
+		if (failedDepth != null && failedDepth >= depth)
+			return false;
+
+		int count;
+		int defenderFives = threats.fiveSquares(defender, moves);
+		if (defenderFives > 1) {
+//			对方有两个连五点，挡不住
+			count = 0;
+		} else if (defenderFives == 1) {
+//			对方冲四，必须先挡
+			count = 1;
+		} else {
+			count = threats.threatMoves(attacker, mode == VCT, moves);
+		}
+		for (int i = 0; i < count && !aborted; i++) {
+			int cell = moves[i];
+			threats.place(cell, attacker);
+			boolean win = defend(attacker, depth - 1, ply + 1);
+			threats.place(cell, Board.EMPTY);
+			if (win) {
+				line[ply] = cell;
+				return true;
+			}
+		}
+		if (!aborted)
+			failed.merge(key, depth, Math::max);
+		return false;
+	}
+
+	/**
+	 * 防守方下棋：所有应对都输才算进攻方赢
+	 *
+	 * @param attacker 进攻方
+	 * @param depth    剩余的进攻步数
+	 * @param ply      当前步数
+	 * @return 是否必胜（对进攻方而言）
+	 */
+	private boolean defend(short attacker, int depth, int ply) {
+		if (++nodes > nodeLimit) {
+			aborted = true;
+			return false;
+		}
+		short defender = attacker == Board.BLACK ? Board.WHITE : Board.BLACK;
+		int[] moves = this.moves[ply];
+//		防守方自己能连五
+		if (threats.fiveSquares(defender, moves) > 0)
+			return false;
+
+		int fives = threats.fiveSquares(attacker, moves);
+		if (fives >= 2) {
+//			活四或双四，挡一个就从另一个连五
+			line[ply] = moves[0];
+			line[ply + 1] = moves[1];
+			lineLength = ply + 2;
+			return true;
+		}
+		int count;
+		if (fives == 1) {
+			count = 1;
+		} else if (mode == VCT) {
+//			挡活三：所有能阻止活四的位置，以及防守方自己的冲四
+			count = threats.threeDefences(attacker, moves);
+			if (count == 0)
+				return false;
+			count = threats.fourMoves(defender, moves, count);
+		} else {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			int cell = moves[i];
+			threats.place(cell, defender);
+			boolean win = attack(attacker, depth, ply + 1);
+			threats.place(cell, Board.EMPTY);
+			if (!win)
+				return false;
+			line[ply] = cell;
+		}
+		return true;
+	}
+}
@@ -1,57 +1,246 @@
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * 性能计时
+ * 计时点（probe）在类加载时注册，之后只用 int 编号，不在热点路径上查字符串或创建对象。
+ * 用法：
+ * <pre>
+ *  long start = Timer.start();
+ *  ...
+ *  Timer.end(Timer.SCORE_POINT, start);
+ * </pre>
+ * 关闭时（valid 为 false，默认）start 返回 0，end 直接返回，只多一次判断，所以计时点可以一直留在代码里。
+ * <p>
+ * 每个线程把调用次数、总时间、最长时间和以 2 的幂分桶的耗时直方图记在自己的 long 数组里，
+ * 不加锁；print 时把所有线程的数据加在一起。其它线程还在运行时读到的数据可能稍旧，线程结束（join）以后是准确的。
+ * 已经结束的线程（例如关闭的线程池里的工作线程）的数据在下一次有新线程开始计时、print 或 reset 时
+ * 合并到一份总的记录里，它的记录随即移除，所以记录的数量不会随着线程的创建和结束无限增长。
+ * 注意：递归调用（例如搜索）每一层都会计入，总时间包含了内层的时间。
+ * <p>
+ * Low-overhead, thread-safe instrumentation with pre-registered probe ids,
+ * per-thread primitive accumulators and nanosecond latency histograms.
+ */
 class Timer {
-	static boolean valid = true;
-	private static Map<String, long[]> record = new LinkedHashMap<>();
-	private static Map<String, List<Long>> lastTime = new HashMap<>();
+	/**
+	 * 最多的计时点数量
+	 */
+	static final int MAX_PROBES = 32;
+	/**
+	 * 直方图的桶数：第 b 个桶是耗时在 [2^(b-1), 2^b) 纳秒之间的调用
+	 */
+	private static final int BUCKETS = 64;
+	/**
+	 * 是否计时
+	 * 不是 volatile：开关之后其它线程可能稍晚才看到，但热点路径上的读取没有额外开销
+	 */
+	static boolean valid = false;
+	/**
+	 * 已注册的计时点名称
+	 */
+	private static final String[] names = new String[MAX_PROBES];
+	private static int probeCount = 0;
+	/**
+	 * 预先注册的计时点
+	 */
+	static final int SCORE_POINT = register("scorePoint"), UPDATE_SCORE = register("updateScore"),
+					GENERATE_MOVES = register("generatePossiblePoints"), SEARCH = register("search");
+	/**
+	 * 还在运行的线程的记录，print 时合并
+	 */
+	private static final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+	/**
+	 * 已经结束的线程的记录之和，用 Timer.class 加锁
+	 */
+	private static final Recorder retired = new Recorder(null);
+	/**
+	 * 当前线程的记录，第一次计时时创建
+	 */
+	private static final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(() -> {
+		Recorder recorder = new Recorder(Thread.currentThread());
+		synchronized (Timer.class) {
+			retire();
+			recorders.add(recorder);
+		}
+		return recorder;
+	});
 
 	public static void main(String[] args) throws InterruptedException {
-		startRecord("A");
-		Thread.sleep(1000);
-		endRecord("A");
+		valid = true;
+		int sleep = register("sleep");
+		for (int i = 0; i < 10; i++) {
+			long start = start();
+			Thread.sleep(100);
+			end(sleep, start);
+		}
 		print();
 	}
 
-	static void startRecord(String flag) {
-		if (!valid) return;
-		if (!record.containsKey(flag))
-			record.put(flag, new long[2]);
-		List<Long> t;
-		if (!lastTime.containsKey(flag)) {
-			t = new ArrayList<>();
-		} else {
-			t = lastTime.get(flag);
+	/**
+	 * 注册一个计时点，同名的计时点只注册一次
+	 *
+	 * @param name 名称
+	 * @return 计时点编号
+	 * @throws ValueOutOfRangeException 计时点太多
+	 */
+	static synchronized int register(String name) throws ValueOutOfRangeException {
+		for (int i = 0; i < probeCount; i++) {
+			if (names[i].equals(name))
+				return i;
+		}
+		if (probeCount == MAX_PROBES) {
+			throw new ValueOutOfRangeException();
 		}
-		t.add(System.nanoTime());
-		lastTime.put(flag, t);
-		record.get(flag)[1]++;
+		names[probeCount] = name;
+		return probeCount++;
 	}
 
-	static void endRecord(String flag) {
-		if (!valid) return;
-		try {
-			record.get(flag)[0] += System.nanoTime() - lastTime.get(flag).get(lastTime.get(flag).size() - 1);
-		} catch (NullPointerException | IndexOutOfBoundsException e) {
-			System.err.printf("No flag %s started!\n", flag);
-		}
-		lastTime.get(flag).remove(lastTime.get(flag).size() - 1);
+	/**
+	 * 开始计时
+	 *
+	 * @return 开始的时间，关闭时为 0
+	 */
+	static long start() {
+		return valid ? System.nanoTime() : 0;
 	}
 
+	/**
+	 * 结束计时并记录
+	 *
+	 * @param probe 计时点编号
+	 * @param start start 的返回值，为 0 时（开始时计时是关闭的）不记录
+	 */
+	static void end(int probe, long start) {
+		if (start == 0) return;
+		recorder.get().add(probe, System.nanoTime() - start);
+	}
+
+	/**
+	 * 输出所有计时点的调用次数、总时间、平均时间、最长时间和耗时分布
+	 */
 	static void print() {
 		if (!valid) return;
 		System.out.println("Time record for all flags");
-		for (Map.Entry<String, long[]> each : record.entrySet()) {
+		int probes;
+		Recorder sum = new Recorder(null);
+		synchronized (Timer.class) {
+			probes = probeCount;
+			retire();
+			sum.merge(retired);
+			for (Recorder each : recorders) {
+				sum.merge(each);
+			}
+		}
+		for (int probe = 0; probe < probes; probe++) {
+			long count = sum.count[probe], total = sum.total[probe], max = sum.max[probe];
+			long[] histogram = Arrays.copyOfRange(sum.histogram, probe * BUCKETS, (probe + 1) * BUCKETS);
+			if (count == 0)
+				continue;
 			System.out.printf(
-							"Flag \"%s\":\n  Total time: %.5fs\n  Total call: %d\n  Average time: %.10fs\n",
-							each.getKey(),
-							each.getValue()[0] / 1000000000.,
-							each.getValue()[1],
-							each.getValue()[0] / 1000000000. / each.getValue()[1]);
+							"Flag \"%s\":\n  Total time: %.5fs\n  Total call: %d\n  Average time: %.10fs\n" +
+											"  Max time: %dns\n  p50/p90/p99 below: %dns / %dns / %dns\n",
+							names[probe],
+							total / 1000000000.,
+							count,
+							total / 1000000000. / count,
+							max,
+							percentile(histogram, count, .5),
+							percentile(histogram, count, .9),
+							percentile(histogram, count, .99));
+		}
+	}
+
+	/**
+	 * 清空所有记录（计时点保持注册）
+	 */
+	static synchronized void reset() {
+		retire();
+		retired.clear();
+		for (Recorder each : recorders) {
+			each.clear();
+		}
+	}
+
+	/**
+	 * 把已经结束的线程的记录合并到 retired，并从 recorders 中移除
+	 * 调用时必须持有 Timer.class 的锁
+	 * 线程结束以后 isAlive 返回 false，它的所有写入对这里都是可见的
+	 */
+	private static void retire() {
+		for (Recorder each : recorders) {
+			if (!each.owner.isAlive()) {
+				retired.merge(each);
+				recorders.remove(each);
+			}
 		}
 	}
 
-	static void reset() {
-		record.clear();
-		lastTime.clear();
+	/**
+	 * 从直方图估计分位数
+	 *
+	 * @param histogram 直方图
+	 * @param count     总调用次数
+	 * @param quantile  分位 (0 - 1)
+	 * @return 分位数所在桶的上界（纳秒）
+	 */
+	private static long percentile(long[] histogram, long count, double quantile) {
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += histogram[b];
+			if (seen >= quantile * count)
+				return b == BUCKETS - 1 ? Long.MAX_VALUE : 1L << b;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * 一个线程的记录，只由该线程写入
+	 */
+	private static class Recorder {
+		/**
+		 * 写入的线程，合并用的记录为 null
+		 */
+		private final Thread owner;
+		private final long[] count = new long[MAX_PROBES], total = new long[MAX_PROBES], max = new long[MAX_PROBES];
+		/**
+		 * 用法：histogram[probe * BUCKETS + bucket]
+		 */
+		private final long[] histogram = new long[MAX_PROBES * BUCKETS];
+
+		Recorder(Thread owner) {
+			this.owner = owner;
+		}
+
+		void add(int probe, long elapsed) {
+			count[probe]++;
+			total[probe] += elapsed;
+			if (elapsed > max[probe])
+				max[probe] = elapsed;
+			histogram[probe * BUCKETS + Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsed))]++;
+		}
+
+		/**
+		 * 把另一份记录加到这份记录上
+		 *
+		 * @param other 另一份记录
+		 */
+		void merge(Recorder other) {
+			for (int probe = 0; probe < MAX_PROBES; probe++) {
+				count[probe] += other.count[probe];
+				total[probe] += other.total[probe];
+				max[probe] = Math.max(max[probe], other.max[probe]);
+			}
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] += other.histogram[i];
+			}
+		}
+
+		void clear() {
+			Arrays.fill(count, 0);
+			Arrays.fill(total, 0);
+			Arrays.fill(max, 0);
+			Arrays.fill(histogram, 0);
+		}
 	}
 }
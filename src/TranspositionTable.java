@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 置换表
+ * 缓存 AI.negamax 的搜索结果，避免重复搜索同一局面
+ * 分数从下棋一方的角度（negamax），连同边界类型、深度和最佳着法一起储存；
+ * 必胜/必败分数（±(MATE - ply)）由 AI 改为相对于储存节点的距离后再存入，读出时换算回当前层数
+ * <p>
+ * 整张表是一个预先分配好的 long[]，每个槽位占两个 long：
+ * 第一个是局面的 64 位键与数据的异或（用于校验），第二个是打包后的数据：
+ * <pre>
+ *  位 0-31  分数（int）
+ *  位 32-39 搜索深度
+ *  位 40-41 边界类型（EXACT, LOWER, UPPER）
+ *  位 42-50 最佳着法（row * 15 + column，NO_MOVE 表示没有）
+ *  位 51-62 搜索代数，用于淘汰旧的条目
+ *  位 63    占用标记，保证有效条目的数据永远不为 0
+ * </pre>
+ * 每个桶有两个槽位：第一个按深度优先替换，第二个总是替换。
+ * <p>
+ * 所有的键在使用前都与一个盐值异或。reset 只换一个新的盐值，旧的条目从此都对不上键，
+ * 相当于清空了整张表，但不需要逐个清零（表有好几 MB 时 clear 的开销比一次浅的搜索还大）。
+ * 盐值与搜索代数互相独立，reset 不改变代数，所以频繁的 reset（例如每个局面一次）不会让代数更快地循环。
+ * <p>
+ * 置换表可以被多个线程同时读写而不加锁：
+ * 两个 long 分开写入，若读到的是另一个线程写了一半的槽位，
+ * 键与数据的异或对不上，这次查找就当作未命中，所以不会读到错误的数据。
+ * 最坏的情况只是丢掉某一次写入。
+ * <p>
+ * 整张表可以保存到文件，下次启动时再读回来（见 save 和 load）。文件格式（小端）：
+ * <pre>
+ *  文件头 56 字节：MAGIC (int), VERSION (int), Zobrist 指纹 (long), 桶数量 (int), 搜索代数 (int),
+ *                  数据字节数 (long), 数据的 CRC32 (long), 估分指纹 (long), 盐值 (long)
+ *  数据：整张表，与内存中的 long[] 相同
+ * </pre>
+ * 版本或 Zobrist 随机数表不同（键的含义不同）、估分规则或权重不同（分数的含义不同）、
+ * 大小不对、校验和不对的文件都会被拒绝。
+ * <p>
+ * The transposition table.
+ * A fixed-size primitive table with depth-preferred / always-replace buckets,
+ * shared lock-free between search threads using XOR-verified slot pairs.
+ */
+class TranspositionTable {
+	/**
+	 * 常量：精确值
+	 */
+	static final int EXACT = 0;
+	/**
+	 * 常量：下界（真实分数 >= 存储分数）
+	 */
+	static final int LOWER = 1;
+	/**
+	 * 常量：上界（真实分数 <= 存储分数）
+	 */
+	static final int UPPER = 2;
+	/**
+	 * 常量：没有最佳着法
+	 */
+	static final int NO_MOVE = 0x1FF;
+	/**
+	 * 每个桶所占 long 的数量（两个槽位，每个槽位两个 long）
+	 */
+	private static final int BUCKET_LONGS = 4;
+	private static final long USED = 1L << 63;
+	/**
+	 * 搜索代数所占的位（12 位），循环一次需要 4096 次搜索
+	 */
+	private static final int GENERATION_MASK = 0xFFF;
+	/**
+	 * 文件标识 "GMTT" 及文件格式版本，搜索或估分的改动使旧的分数失效时需要增加版本
+	 */
+	static final int MAGIC = 0x474D5454, VERSION = 3;
+	/**
+	 * 文件头的字节数
+	 */
+	private static final int HEADER_SIZE = 56;
+	/**
+	 * 读写文件时每次映射的最大字节数
+	 */
+	private static final int CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * 表本身，桶按顺序紧密排列
+	 */
+	private final long[] table;
+	/**
+	 * 桶数量 - 1，桶数量总是 2 的幂
+	 */
+	private final int bucketMask;
+	/**
+	 * 当前搜索代数，每次开始新的搜索时加一
+	 */
+	private volatile int generation = 0;
+	/**
+	 * 与所有键异或的盐值，reset 时更换
+	 * 注意：只能在没有线程搜索时更换
+	 */
+	private long salt = 0;
+
+	/**
+	 * 构造器
+	 *
+	 * @param sizeMB 置换表大小（MB），实际大小向下取整到 2 的幂
+	 * @throws ValueOutOfRangeException 大小不为正数
+	 */
+	TranspositionTable(int sizeMB) throws ValueOutOfRangeException {
+		if (sizeMB <= 0) {
+			throw new ValueOutOfRangeException();
+		}
+		long buckets = Long.highestOneBit(sizeMB * 1024L * 1024L / (BUCKET_LONGS * Long.BYTES));
+		buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+		this.bucketMask = (int) buckets - 1;
+		this.table = new long[(int) buckets * BUCKET_LONGS];
+	}
+
+	/**
+	 * 从打包数据中取出分数
+	 *
+	 * @param data probe 返回的数据
+	 * @return 分数
+	 */
+	static int score(long data) {
+		return (int) data;
+	}
+
+	/**
+	 * 从打包数据中取出深度
+	 *
+	 * @param data probe 返回的数据
+	 * @return 搜索深度
+	 */
+	static int depth(long data) {
+		return (int) (data >>> 32) & 0xFF;
+	}
+
+	/**
+	 * 从打包数据中取出边界类型
+	 *
+	 * @param data probe 返回的数据
+	 * @return EXACT, LOWER 或 UPPER
+	 */
+	static int bound(long data) {
+		return (int) (data >>> 40) & 0x3;
+	}
+
+	/**
+	 * 从打包数据中取出最佳着法
+	 *
+	 * @param data probe 返回的数据
+	 * @return row * 15 + column，或 NO_MOVE
+	 */
+	static int move(long data) {
+		return (int) (data >>> 42) & 0x1FF;
+	}
+
+	/**
+	 * 开始一次新的搜索，旧代数的条目会被优先替换
+	 */
+	void newSearch() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	/**
+	 * 清空置换表
+	 */
+	void clear() {
+		Arrays.fill(table, 0);
+		generation = 0;
+		salt = 0;
+	}
+
+	/**
+	 * 作废所有条目，效果与 clear 相同，但不逐个清零，开销与表的大小无关
+	 * 旧的条目仍占着槽位，下一次搜索开始（newSearch）以后按旧代数的条目被替换
+	 * 注意：不能在搜索的同时调用
+	 */
+	void reset() {
+		salt += 0x9E3779B97F4A7C15L;
+	}
+
+	/**
+	 * 查找局面
+	 *
+	 * @param key 局面的 64 位键
+	 * @return 打包后的数据，未命中时返回 0
+	 */
+	long probe(long key) {
+		key ^= salt;
+		int index = bucketIndex(key);
+		for (int slot = index; slot < index + BUCKET_LONGS; slot += 2) {
+			// 先读到局部变量，校验与返回的必须是同一份数据
+			long check = table[slot], data = table[slot + 1];
+			if (data != 0 && (check ^ data) == key)
+				return data;
+		}
+		return 0;
+	}
+
+	/**
+	 * 储存搜索结果
+	 *
+	 * @param key   局面的 64 位键
+	 * @param depth 搜索深度 (0 - 255)
+	 * @param bound 边界类型
+	 * @param score 分数
+	 * @param move  最佳着法（row * 15 + column，或 NO_MOVE）
+	 */
+	void store(long key, int depth, int bound, int score, int move) {
+		int generation = this.generation;
+		long data = USED
+						| ((long) generation << 51)
+						| ((long) (move & 0x1FF) << 42)
+						| ((long) (bound & 0x3) << 40)
+						| ((long) (depth & 0xFF) << 32)
+						| (score & 0xFFFFFFFFL);
+		insert(key ^ salt, data, depth, generation);
+	}
+
+	/**
+	 * 把打包好的数据放入所在的桶
+	 *
+	 * @param key        局面的 64 位键（已与盐值异或）
+	 * @param data       打包后的数据
+	 * @param depth      搜索深度
+	 * @param generation 当前搜索代数
+	 */
+	private void insert(long key, long data, int depth, int generation) {
+		int index = bucketIndex(key);
+		long old = table[index + 1];
+		// 深度优先槽位：空位、同一局面、旧代数或者新结果更深时替换
+		if (old == 0
+						|| (table[index] ^ old) == key
+						|| ((int) (old >>> 51) & GENERATION_MASK) != generation
+						|| depth >= depth(old)) {
+			table[index] = key ^ data;
+			table[index + 1] = data;
+		} else {
+			// 总是替换的槽位
+			table[index + 2] = key ^ data;
+			table[index + 3] = data;
+		}
+	}
+
+	/**
+	 * 把整张表保存到文件（已存在时覆盖）
+	 * 注意：保存时不能有线程在写这张表
+	 *
+	 * @param path   文件
+	 * @param weight 表中分数所用的敌我得分权重，见 AI 的构造器
+	 * @throws IOException 写入失败
+	 */
+	void save(Path path, double weight) throws IOException {
+		long bytes = (long) table.length * Long.BYTES;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			CRC32 crc = new CRC32();
+			for (long offset = 0; offset < bytes; offset += CHUNK_SIZE) {
+				int length = (int) Math.min(CHUNK_SIZE, bytes - offset);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + offset, length);
+				buffer.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer()
+								.put(table, (int) (offset / Long.BYTES), length / Long.BYTES);
+				crc.update(buffer);
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC).putInt(VERSION).putLong(Board.zobristFingerprint()).putInt(bucketMask + 1)
+							.putInt(generation).putLong(bytes).putLong(crc.getValue()).putLong(evaluation(weight)).putLong(salt);
+			header.clear();
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		}
+	}
+
+	/**
+	 * 从文件读取保存的表
+	 * 文件的大小与本表相同时整体复制，否则把文件中的每一个条目重新放入本表（本表较小时深度浅的条目会被挤掉）。
+	 * 文件经过完整校验以后才会写入本表，被拒绝的文件不会改变本表。
+	 * 注意：读取时不能有线程在使用这张表
+	 *
+	 * @param path   文件
+	 * @param weight 本表所用的敌我得分权重，与文件的不同时拒绝
+	 * @return 读入的条目数
+	 * @throws IOException 读取失败，或者文件格式、版本、Zobrist 指纹、估分指纹、大小、校验和不对
+	 */
+	int load(Path path, double weight) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0)
+					break;
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt(0) != MAGIC) {
+				throw new IOException("Not a transposition table file");
+			}
+			if (header.getInt(4) != VERSION || header.getLong(8) != Board.zobristFingerprint()) {
+				throw new IOException("Transposition table file is from another version");
+			}
+			if (header.getLong(40) != evaluation(weight)) {
+				throw new IOException("Transposition table file was saved with another evaluation");
+			}
+			int buckets = header.getInt(16), savedGeneration = header.getInt(20);
+			long bytes = header.getLong(24);
+			if (buckets <= 0 || Integer.bitCount(buckets) != 1 || bytes != (long) buckets * BUCKET_LONGS * Long.BYTES
+							|| channel.size() != HEADER_SIZE + bytes) {
+				throw new IOException("Transposition table file is truncated");
+			}
+			// 先完整校验，再写入
+			CRC32 crc = new CRC32();
+			for (long offset = 0; offset < bytes; offset += CHUNK_SIZE) {
+				crc.update(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset,
+								Math.min(CHUNK_SIZE, bytes - offset)));
+			}
+			if (crc.getValue() != header.getLong(32)) {
+				throw new IOException("Transposition table file is corrupted");
+			}
+
+			boolean sameSize = buckets == bucketMask + 1;
+			if (!sameSize)
+				Arrays.fill(table, 0);
+			// 文件中的键是与保存时的盐值异或过的
+			salt = header.getLong(48);
+			int count = 0;
+			for (long offset = 0; offset < bytes; offset += CHUNK_SIZE) {
+				int length = (int) Math.min(CHUNK_SIZE, bytes - offset);
+				LongBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offset, length)
+								.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+				if (sameSize) {
+					data.get(table, (int) (offset / Long.BYTES), length / Long.BYTES);
+					for (int i = (int) (offset / Long.BYTES) + 1; i < (offset + length) / Long.BYTES; i += 2) {
+						if (table[i] != 0) count++;
+					}
+				} else {
+					for (int i = 0; i < length / Long.BYTES; i += 2) {
+						long check = data.get(i), value = data.get(i + 1);
+						if (value != 0) {
+							insert(check ^ value, value, depth(value), savedGeneration);
+							count++;
+						}
+					}
+				}
+			}
+			generation = savedGeneration & GENERATION_MASK;
+			return count;
+		}
+	}
+
+	/**
+	 * 估分的指纹：估分规则和敌我得分权重，任何一个变了保存的分数就不能再用
+	 *
+	 * @param weight 敌我得分权重
+	 * @return 指纹
+	 */
+	private static long evaluation(double weight) {
+		return Board.evaluationFingerprint() * 31 + Double.doubleToLongBits(weight);
+	}
+
+	/**
+	 * 计算键所对应的桶在数组中的起始下标
+	 *
+	 * @param key 局面的 64 位键
+	 * @return 下标
+	 */
+	private int bucketIndex(long key) {
+		return ((int) (key ^ (key >>> 32)) & bucketMask) * BUCKET_LONGS;
+	}
+}
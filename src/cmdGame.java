@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Scanner;
 
@@ -16,6 +19,15 @@ public class cmdGame {
 		Board board = new Board();
 		AI aiBlack = new AI(board, Board.BLACK, .9);
 		AI aiWhite = new AI(board, Board.WHITE, .8);
+		try {
+			OpeningBook book = OpeningBook.open(Paths.get("opening.book"));
+			aiBlack.setOpeningBook(book);
+			aiWhite.setOpeningBook(book);
+		} catch (NoSuchFileException ignored) {
+//			没有开局库文件就不用开局库
+		} catch (IOException e) {
+			System.out.println("Opening book not loaded: " + e.getMessage());
+		}
 
 		Scanner scanner = new Scanner(System.in);
 		System.out.print("Input \"y\" to start playing with AI.\nOtherwise, two AIs will start to play with each other" +
@@ -30,6 +42,15 @@ public class cmdGame {
 			} catch (Exception ignored) {
 			}
 		}
+		long timeLimit;
+		while (true) {
+			System.out.print("Input the time limit per move in ms (\"0\" for no limit): ");
+			try {
+				timeLimit = Long.parseLong(scanner.next());
+				if (timeLimit >= 0) break;
+			} catch (Exception ignored) {
+			}
+		}
 		System.out.println(board);
 
 		do {
@@ -41,9 +62,8 @@ public class cmdGame {
 			} else {
 				System.out.println("Black●:");
 				System.out.println("Thinking...");
-				int[] aiInput = aiBlack.iterativeDeepening(depth, false);
-				System.out.println("boardScoreCache = " + board.boardScoreCache.size());
-				System.out.println(Arrays.toString(aiInput));
+				int[] aiInput = timeLimit > 0 ? aiBlack.timedSearch(timeLimit, 0) : aiBlack.iterativeDeepening(depth, false);
+				System.out.println(Arrays.toString(aiInput) + ", nodes: " + aiBlack.getNodes());
 				board.setChess(aiInput[0], aiInput[1], true);
 			}
 			System.out.println(board);
@@ -53,9 +73,8 @@ public class cmdGame {
 
 			System.out.println("White○:");
 			System.out.println("Thinking...");
-			int[] aiInput = aiWhite.iterativeDeepening(depth, false);
-			System.out.println("boardScoreCache = " + board.boardScoreCache.size());
-			System.out.println(Arrays.toString(aiInput));
+			int[] aiInput = timeLimit > 0 ? aiWhite.timedSearch(timeLimit, 0) : aiWhite.iterativeDeepening(depth, false);
+			System.out.println(Arrays.toString(aiInput) + ", nodes: " + aiWhite.getNodes());
 			board.setChess(aiInput[0], aiInput[1], true);
 			System.out.println(board);
 			System.out.printf("White: %d\nBlack: %d\n\n", board.scoreBoard(Board.WHITE, 1),